@@ -0,0 +1,109 @@
+package org.otaibe.commons.quarkus.core.extension.deployment;
+
+import io.quarkus.arc.deployment.BeanContainerBuildItem;
+import io.quarkus.arc.deployment.SynthesisFinishedBuildItem;
+import io.quarkus.arc.processor.BeanInfo;
+import io.quarkus.deployment.annotations.BuildStep;
+import io.quarkus.deployment.annotations.ExecutionTime;
+import io.quarkus.deployment.annotations.Record;
+import io.quarkus.deployment.builditem.CombinedIndexBuildItem;
+import io.quarkus.deployment.builditem.FeatureBuildItem;
+import io.quarkus.deployment.builditem.ShutdownContextBuildItem;
+import jakarta.enterprise.inject.Default;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.IndexView;
+import org.jboss.jandex.Type;
+import org.jboss.logging.Logger;
+import org.otaibe.commons.quarkus.core.extension.runtime.CoreExtensionRecorder;
+import org.otaibe.commons.quarkus.core.utils.BeanManagerUtils;
+
+/**
+ * Indexes the class beans by the interfaces and abstract classes they implement, so {@link
+ * BeanManagerUtils#getReferences} doesn't have to scan all the beans, and warms up the bean cache on
+ * startup. A type which is also provided by a producer, a synthetic bean or a class bean that can't be
+ * looked up by its class (a qualifier other than the default one or a <code>@Typed</code> restriction)
+ * is not indexed, the bean manager resolves it at runtime.
+ */
+class CoreExtensionProcessor {
+
+    private static final Logger LOG = Logger.getLogger(CoreExtensionProcessor.class);
+
+    private static final String FEATURE = "core-extension";
+    private static final String JAVA_PACKAGE = "java.";
+    private static final DotName DEFAULT_QUALIFIER = DotName.createSimple(Default.class.getName());
+
+    @BuildStep
+    FeatureBuildItem feature() {
+        return new FeatureBuildItem(FEATURE);
+    }
+
+    @BuildStep
+    @Record(ExecutionTime.STATIC_INIT)
+    void registerBeanIndex(final SynthesisFinishedBuildItem synthesisFinished,
+                           final CombinedIndexBuildItem combinedIndex,
+                           final ShutdownContextBuildItem shutdownContext,
+                           final CoreExtensionRecorder recorder) {
+        final IndexView index = combinedIndex.getIndex();
+        final Map<String, List<String>> beanIndex = new HashMap<>();
+        final Set<String> notIndexed = new HashSet<>();
+        for (final BeanInfo bean : synthesisFinished.getBeans()) {
+            final DotName beanClass = bean.getBeanClass();
+            if (!bean.isClassBean() || !isResolvableByClass(bean, beanClass)) {
+                bean.getTypes().forEach(type -> notIndexed.add(type.name().toString()));
+                continue;
+            }
+            for (final Type type : bean.getTypes()) {
+                if (!isIndexedType(index, beanClass, type)) {
+                    continue;
+                }
+                final List<String> implementations = beanIndex
+                        .computeIfAbsent(type.name().toString(), s -> new ArrayList<>());
+                if (!implementations.contains(beanClass.toString())) {
+                    implementations.add(beanClass.toString());
+                }
+            }
+        }
+        notIndexed.forEach(beanIndex::remove);
+        LOG.debugf("indexed %d bean types", beanIndex.size());
+        recorder.registerBeanIndex(beanIndex, shutdownContext);
+    }
+
+    @BuildStep
+    @Record(ExecutionTime.RUNTIME_INIT)
+    void warmUpBeans(final BeanContainerBuildItem beanContainer,
+                     final CoreExtensionRecorder recorder) {
+        recorder.warmUpBeans();
+    }
+
+    /**
+     * {@link BeanManagerUtils#getReferences} looks up an indexed implementation by its class with the
+     * default qualifier.
+     */
+    private static boolean isResolvableByClass(final BeanInfo bean, final DotName beanClass) {
+        return bean.getQualifier(DEFAULT_QUALIFIER).isPresent()
+                && bean.getTypes().stream().anyMatch(type -> type.name().equals(beanClass));
+    }
+
+    /** Only the interfaces and the abstract classes from the index are worth a lookup by type. */
+    private static boolean isIndexedType(final IndexView index, final DotName beanClass, final Type type) {
+        if (type.kind() != Type.Kind.CLASS && type.kind() != Type.Kind.PARAMETERIZED_TYPE) {
+            return false;
+        }
+        final DotName name = type.name();
+        if (name.equals(beanClass) || name.toString().startsWith(JAVA_PACKAGE)) {
+            return false;
+        }
+        final ClassInfo classInfo = index.getClassByName(name);
+        return classInfo != null
+                && (Modifier.isInterface(classInfo.flags()) || Modifier.isAbstract(classInfo.flags()));
+    }
+
+}
@@ -0,0 +1,8 @@
+package org.otaibe.commons.quarkus.core.extension.deployment;
+@io.quarkus.Generated("Quarkus annotation processor")
+public final class CoreExtensionProcessor$$accessor {
+    private CoreExtensionProcessor$$accessor() {}
+    public static Object construct() {
+        return new CoreExtensionProcessor();
+    }
+}
@@ -0,0 +1,28 @@
+package org.otaibe.commons.quarkus.core.extension.runtime;
+
+import io.quarkus.arc.Arc;
+import io.quarkus.runtime.ShutdownContext;
+import io.quarkus.runtime.annotations.Recorder;
+import java.util.List;
+import java.util.Map;
+import org.otaibe.commons.quarkus.core.utils.BeanManagerUtils;
+
+@Recorder
+public class CoreExtensionRecorder {
+
+    /**
+     * Replaces the index of the previous start (dev mode restarts) and drops it on shutdown, so the
+     * static caches don't keep the beans and the classes of a discarded class loader.
+     *
+     * @param index type name -> names of the bean classes which implement it
+     */
+    public void registerBeanIndex(final Map<String, List<String>> index, final ShutdownContext shutdownContext) {
+        BeanManagerUtils.registerIndex(index);
+        shutdownContext.addShutdownTask(BeanManagerUtils::clearIndex);
+    }
+
+    public void warmUpBeans() {
+        new BeanManagerUtils().warmUp(Arc.container().beanManager());
+    }
+
+}
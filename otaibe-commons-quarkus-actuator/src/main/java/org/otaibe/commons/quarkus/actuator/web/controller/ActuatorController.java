@@ -21,6 +21,8 @@ import org.apache.commons.lang3.StringUtils;
 import org.otaibe.commons.quarkus.actuator.web.domain.GitInfo;
 import org.otaibe.commons.quarkus.actuator.web.domain.Info;
 import org.otaibe.commons.quarkus.actuator.web.domain.Metrics;
+import org.otaibe.commons.quarkus.cache.service.CacheRegistry;
+import org.otaibe.commons.quarkus.cache.service.CacheStats;
 import org.otaibe.commons.quarkus.core.utils.JsonUtils;
 import reactor.core.publisher.Mono;
 
@@ -33,6 +35,7 @@ public class ActuatorController {
     public static final String INFO = "/info";
     public static final String GIT_PROPERTIES = "META-INF/resources/git.properties";
     public static final String METRICS = "/metrics";
+    public static final String CACHE_PREFIX = "cache.";
 
     @Inject
     JsonUtils jsonUtils;
@@ -93,8 +96,31 @@ public class ActuatorController {
         final Runtime runtime = Runtime.getRuntime();
         result.setMemory(runtime.totalMemory());
         result.setMemoryFree(runtime.freeMemory());
+        CacheRegistry.getAll().forEach((name, cache) -> addCacheStats(result.getGauges(), CACHE_PREFIX + name + ".", cache.stats()));
 
         return jsonUtils.toStringLazy(result, getObjectMapper()).toString();
     }
 
+    private void addCacheStats(final Map<String, Number> gauges, final String prefix, final CacheStats stats) {
+        gauges.put(prefix + "size", stats.getSize());
+        gauges.put(prefix + "weight", stats.getWeight());
+        gauges.put(prefix + "offheap.size", stats.getOffHeapSize());
+        gauges.put(prefix + "hit.count", stats.getHitCount());
+        gauges.put(prefix + "miss.count", stats.getMissCount());
+        gauges.put(prefix + "hit.ratio", stats.getHitRate());
+        gauges.put(prefix + "put.count", stats.getPutCount());
+        gauges.put(prefix + "removal.count", stats.getRemovalCount());
+        gauges.put(prefix + "eviction.size.count", stats.getSizeEvictionCount());
+        gauges.put(prefix + "eviction.expired.count", stats.getExpirationCount());
+        gauges.put(prefix + "load.success.count", stats.getLoadSuccessCount());
+        gauges.put(prefix + "load.failure.count", stats.getLoadFailureCount());
+        gauges.put(prefix + "load.time.average.ns", stats.getAverageLoadNanos());
+        final long[] loadTimeCounts = stats.getLoadTimeCounts();
+        for (int i = 0; i < loadTimeCounts.length; i++) {
+            final String bucket = i < CacheStats.LOAD_TIME_BOUNDS_MILLIS.length ?
+                    "le." + CacheStats.LOAD_TIME_BOUNDS_MILLIS[i] + "ms" : "le.inf";
+            gauges.put(prefix + "load.time." + bucket, loadTimeCounts[i]);
+        }
+    }
+
 }
\ No newline at end of file
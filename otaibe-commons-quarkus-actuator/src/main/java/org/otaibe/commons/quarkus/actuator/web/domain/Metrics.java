@@ -1,7 +1,11 @@
 package org.otaibe.commons.quarkus.actuator.web.domain;
 
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.quarkus.runtime.annotations.RegisterForReflection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
@@ -17,4 +21,14 @@ public class Metrics {
     Long systemLoadAverage = 0L;
     @JsonProperty("httpsessions.active")
     Long httpSessionsActive = 0L;
+    /**
+     * Written as top level properties, e.g. <code>cache.&lt;name&gt;.hit.count</code>.
+     */
+    @JsonIgnore
+    Map<String, Number> gauges = new LinkedHashMap<>();
+
+    @JsonAnyGetter
+    public Map<String, Number> getGauges() {
+        return gauges;
+    }
 }
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.PostConstruct;
 import jakarta.inject.Inject;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.Optional;
@@ -14,7 +15,9 @@ import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.otaibe.commons.quarkus.core.utils.DataFormat;
 import org.otaibe.commons.quarkus.core.utils.JsonUtils;
+import org.reactivestreams.Subscriber;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.util.retry.Retry;
@@ -26,6 +29,7 @@ import software.amazon.awssdk.http.nio.netty.SdkEventLoopGroup;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.PutObjectResponse;
 
@@ -40,6 +44,7 @@ public class StorageProcessor {
     public static final int NUM_RETRIES = 40;
     public static final int FIRST_DELAY_MILLIS = 10;
     public static final int MAX_RETRY_DELAY_SECONDS = 1;
+    public static final String OCTET_STREAM_CONTENT_TYPE = "application/octet-stream";
 
     public static final String AWS_ACCESS_KEY_ID = "aws.accessKeyId";
     public static final String AWS_SECRET_ACCESS_KEY = "aws.secretAccessKey";
@@ -109,42 +114,61 @@ public class StorageProcessor {
                 .map(t -> t.get());
     }
 
+    /**
+     * Streams the elements of a json array stored under the key. The object is decoded while it is
+     * downloaded, so only one element is held in memory at a time. Text json and Smile objects are
+     * detected as in {@link #readObject(String, Class)}, a CBOR object fails with an error - read it
+     * with {@link #readObject(String, Class)} instead.
+     */
+    public <T> Flux<T> readObjects(final String key, final Class<T> tClass) {
+        return Mono.fromFuture(() -> getS3AsyncClient().getObject(
+                        builder -> builder.key(key).bucket(getAwsBucket()),
+                        AsyncResponseTransformer.<GetObjectResponse>toPublisher()
+                ))
+                .doOnSubscribe(subscription -> log.trace("readObjects {} {}", key, tClass.getSimpleName()))
+                .onErrorResume(throwable -> NoSuchKeyException.class.isAssignableFrom(throwable.getClass()),
+                        throwable -> Mono.empty())
+                .doOnError(throwable -> log.trace("unable to readObjects (before retry)", throwable))
+                .retryWhen(Retry.backoff(NUM_RETRIES, Duration.ofMillis(FIRST_DELAY_MILLIS)))
+                .flatMapMany(publisher -> getJsonUtils().readValues(publisher, tClass, getObjectMapper()))
+                .doOnError(throwable -> log.error("unable to read objects with key: " + key, throwable));
+    }
+
     public <T> Mono<Object> writeObject(final String key, final T object) {
-        return write(key, getJsonUtils().toStringLazy(object, getObjectMapper()).toString());
+        return writeObject(key, object, DataFormat.JSON);
+    }
+
+    /**
+     * Writes the object as text json, Smile or CBOR. {@link #readObject(String, Class)} detects the
+     * format on read, so objects written with different formats can live side by side.
+     */
+    public <T> Mono<Object> writeObject(final String key, final T object, final DataFormat format) {
+        return Mono.fromCallable(() -> getJsonUtils().toByteBuffer(object, getObjectMapper(), format))
+                .flatMap(byteBuffer -> write(key, new ByteBufferRequestBody(byteBuffer, format.getMediaType()), "object"));
     }
 
     public Mono<Object> write(final String key, final String text) {
-        final AtomicBoolean isWritten = new AtomicBoolean(false);
-        return Flux.<PutObjectResponse>create(fluxSink ->
-                getS3AsyncClient().putObject(
-                        builder -> builder.key(key).bucket(getAwsBucket()),
-                        AsyncRequestBody.fromString(text)
-                )
-                        .whenComplete((putObjectResponse, throwable) -> {
-                            if (putObjectResponse != null) {
-                                fluxSink.next(putObjectResponse);
-                                fluxSink.complete();
-                                return;
-                            }
-                            fluxSink.error(throwable);
-                        })
-        )
-                .next()
-                .flatMap(putObjectResponse -> (getEnsureWrite() ?
-                        ensureWriteMono(key, isWritten, putObjectResponse.eTag()) : Mono.just(true))
-                        .then(Mono.just((Object) putObjectResponse))
-                )
-                .doOnError(throwable -> log.trace("unable to write text (before retry) with key: " + key, throwable))
-                .retryWhen(Retry.backoff(NUM_RETRIES, Duration.ofMillis(FIRST_DELAY_MILLIS)))
-                .doOnError(throwable -> log.error("unable to write text with key: " + key, throwable));
+        return write(key, AsyncRequestBody.fromString(text), "text");
     }
 
     public Mono<Object> write(final String key, final byte[] data) {
+        return write(key, AsyncRequestBody.fromBytes(data), "bytes");
+    }
+
+    /**
+     * Uploads the remaining bytes of the buffer without copying them. The buffer must not be
+     * modified until the returned mono terminates.
+     */
+    public Mono<Object> write(final String key, final ByteBuffer data) {
+        return write(key, new ByteBufferRequestBody(data, OCTET_STREAM_CONTENT_TYPE), "bytes");
+    }
+
+    protected Mono<Object> write(final String key, final AsyncRequestBody requestBody, final String what) {
         final AtomicBoolean isWritten = new AtomicBoolean(false);
         return Flux.<PutObjectResponse>create(fluxSink ->
                 getS3AsyncClient().putObject(
                         builder -> builder.key(key).bucket(getAwsBucket()),
-                        AsyncRequestBody.fromBytes(data)
+                        requestBody
                 )
                         .whenComplete((putObjectResponse, throwable) -> {
                             if (putObjectResponse != null) {
@@ -160,9 +184,9 @@ public class StorageProcessor {
                         ensureWriteMono(key, isWritten, putObjectResponse.eTag()) : Mono.just(true))
                         .then(Mono.just((Object) putObjectResponse))
                 )
-                .doOnError(throwable -> log.trace("unable to write bytes (before retry) with key: " + key, throwable))
+                .doOnError(throwable -> log.trace("unable to write " + what + " (before retry) with key: " + key, throwable))
                 .retryWhen(Retry.backoff(NUM_RETRIES, Duration.ofMillis(FIRST_DELAY_MILLIS)))
-                .doOnError(throwable -> log.error("unable to write bytes with key: " + key, throwable));
+                .doOnError(throwable -> log.error("unable to write " + what + " with key: " + key, throwable));
     }
 
     public Mono<String> read(final String key) {
@@ -263,4 +287,34 @@ public class StorageProcessor {
     }
 
 
+
+    /**
+     * Request body over a heap or direct buffer. Every subscription (the sdk re-subscribes on
+     * retries) gets its own duplicate, so the position of the original buffer is never touched.
+     */
+    private static class ByteBufferRequestBody implements AsyncRequestBody {
+        private final ByteBuffer byteBuffer;
+        private final String contentType;
+
+        ByteBufferRequestBody(final ByteBuffer byteBuffer, final String contentType) {
+            this.byteBuffer = byteBuffer;
+            this.contentType = contentType;
+        }
+
+        @Override
+        public String contentType() {
+            return contentType;
+        }
+
+        @Override
+        public Optional<Long> contentLength() {
+            return Optional.of((long) byteBuffer.remaining());
+        }
+
+        @Override
+        public void subscribe(final Subscriber<? super ByteBuffer> subscriber) {
+            Mono.fromSupplier(() -> byteBuffer.duplicate())
+                    .subscribe(subscriber);
+        }
+    }
 }
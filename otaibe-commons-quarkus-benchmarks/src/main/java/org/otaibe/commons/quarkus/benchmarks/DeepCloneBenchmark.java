@@ -0,0 +1,142 @@
+package org.otaibe.commons.quarkus.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlRootElement;
+import lombok.Data;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.otaibe.commons.quarkus.core.beans.CustomObjectMapperConfig;
+import org.otaibe.commons.quarkus.core.utils.BeanUtils;
+import org.otaibe.commons.quarkus.core.utils.CloneUtils;
+import org.otaibe.commons.quarkus.core.utils.JsonUtils;
+import org.otaibe.commons.quarkus.core.utils.XmlUtils;
+
+/**
+ * Compares the deep clone paths: the field by field copy of {@link CloneUtils}, the json round
+ * trip of {@link JsonUtils} (taken for mappers with custom configuration), java serialization
+ * of {@link BeanUtils} and the xml round trip of {@link XmlUtils} with pooled marshallers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeepCloneBenchmark {
+
+    private final CloneUtils cloneUtils = new CloneUtils();
+    private final BeanUtils beanUtils = new BeanUtils();
+    private final XmlUtils xmlUtils = new XmlUtils();
+    private JsonUtils jsonUtils;
+    private ObjectMapper defaultMapper;
+    private ObjectMapper configuredMapper;
+    private JAXBContext jaxbContext;
+    private Order order;
+    private XmlOrder xmlOrder;
+
+    @Setup
+    public void setup() throws Exception {
+        final CustomObjectMapperConfig config = new CustomObjectMapperConfig();
+        defaultMapper = new ObjectMapper();
+        configuredMapper = new ObjectMapper();
+        config.fillObjectMapper(configuredMapper);
+        jsonUtils = new JsonUtils(defaultMapper, config);
+
+        order = new Order();
+        order.setId("order-1");
+        order.setCustomer("customer-1");
+        order.setTotal(12345L);
+        final List<Line> lines = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final Line line = new Line();
+            line.setSku("sku-" + i);
+            line.setQuantity(i);
+            line.setPrice(i * 1.5d);
+            lines.add(line);
+        }
+        order.setLines(lines);
+        final Map<String, Object> attributes = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i++) {
+            attributes.put("key-" + i, i % 2 == 0 ? "value-" + i : (Object) i);
+        }
+        order.setAttributes(attributes);
+
+        xmlUtils.init();
+        jaxbContext = JAXBContext.newInstance(XmlOrder.class);
+        xmlOrder = new XmlOrder();
+        xmlOrder.setId(order.getId());
+        xmlOrder.setCustomer(order.getCustomer());
+        xmlOrder.setTotal(order.getTotal());
+        xmlOrder.setLines(lines);
+    }
+
+    @Benchmark
+    public Order cloneUtils() {
+        return cloneUtils.deepClone(order).orElseThrow();
+    }
+
+    @Benchmark
+    public Order jsonUtilsFieldCopy() {
+        return jsonUtils.deepClone(order, defaultMapper, Order.class);
+    }
+
+    @Benchmark
+    public Order jsonUtilsConvert() {
+        return jsonUtils.deepClone(order, configuredMapper, Order.class);
+    }
+
+    @Benchmark
+    public Order beanUtilsSerialization() {
+        return beanUtils.fromBytes(beanUtils.toBytes(order));
+    }
+
+    @Benchmark
+    public XmlOrder xmlUtils() {
+        return xmlUtils.deepClone(xmlOrder, jaxbContext);
+    }
+
+    @Data
+    public static class Order implements Serializable {
+        private String id;
+        private String customer;
+        private long total;
+        private List<Line> lines;
+        private Map<String, Object> attributes;
+    }
+
+    /** Same content as {@link Order} without the untyped attributes, which jaxb can't bind. */
+    @Data
+    @XmlRootElement
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class XmlOrder {
+        private String id;
+        private String customer;
+        private long total;
+        private List<Line> lines;
+    }
+
+    @Data
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class Line implements Serializable {
+        private String sku;
+        private int quantity;
+        private double price;
+    }
+}
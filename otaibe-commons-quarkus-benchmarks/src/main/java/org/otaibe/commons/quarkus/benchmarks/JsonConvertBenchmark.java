@@ -0,0 +1,109 @@
+package org.otaibe.commons.quarkus.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.otaibe.commons.quarkus.benchmarks.DeepCloneBenchmark.Line;
+import org.otaibe.commons.quarkus.benchmarks.DeepCloneBenchmark.Order;
+import org.otaibe.commons.quarkus.core.beans.CustomObjectMapperConfig;
+import org.otaibe.commons.quarkus.core.utils.JsonUtils;
+
+/**
+ * Compares {@link JsonUtils#fromMap}, {@link JsonUtils#toMap} and {@link JsonUtils#deepClone},
+ * which go through a token buffer, with the previous {@code writeValueAsBytes} + {@code readValue}
+ * round trip. The mapper has the custom configuration, so {@code deepClone} converts instead of
+ * copying field by field. Run with {@code -prof gc} and compare {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonConvertBenchmark {
+
+    private JsonUtils jsonUtils;
+    private ObjectMapper objectMapper;
+    private Order order;
+    private Map<String, Object> orderMap;
+
+    @Setup
+    public void setup() throws Exception {
+        final CustomObjectMapperConfig config = new CustomObjectMapperConfig();
+        objectMapper = new ObjectMapper();
+        config.fillObjectMapper(objectMapper);
+        jsonUtils = new JsonUtils(objectMapper, config);
+
+        order = new Order();
+        order.setId("order-1");
+        order.setCustomer("customer-1");
+        order.setTotal(12345L);
+        final List<Line> lines = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final Line line = new Line();
+            line.setSku("sku-" + i);
+            line.setQuantity(i);
+            line.setPrice(i * 1.5d);
+            lines.add(line);
+        }
+        order.setLines(lines);
+        final Map<String, Object> attributes = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i++) {
+            attributes.put("key-" + i, i % 2 == 0 ? "value-" + i : (Object) i);
+        }
+        order.setAttributes(attributes);
+        orderMap = objectMapper.readValue(objectMapper.writeValueAsBytes(order), Map.class);
+    }
+
+    @Benchmark
+    public Order fromMapTokenBuffer() {
+        return jsonUtils.fromMap(orderMap, objectMapper, Order.class);
+    }
+
+    @Benchmark
+    public Order fromMapBytes() throws Exception {
+        return objectMapper.readValue(objectMapper.writeValueAsBytes(orderMap), Order.class);
+    }
+
+    @Benchmark
+    public Map<String, Object> toMapTokenBuffer() {
+        return jsonUtils.toMap(order, objectMapper);
+    }
+
+    @Benchmark
+    public Map<String, Object> toMapBytes() throws Exception {
+        final Map<String, Object> map =
+                objectMapper.readValue(objectMapper.writeValueAsBytes(order), Map.class);
+        // the same filtering as JsonUtils#toMap, so only the conversion differs
+        return map.keySet().stream()
+                .filter(s -> s != null)
+                .filter(s -> null != map.get(s))
+                .filter(s -> false == map.get(s).toString().isEmpty()
+                        && 0x0 != map.get(s).toString().charAt(0))
+                .collect(Collectors.toMap(o -> o, map::get));
+    }
+
+    @Benchmark
+    public Order deepCloneTokenBuffer() {
+        return jsonUtils.deepClone(order, objectMapper, Order.class);
+    }
+
+    @Benchmark
+    public Order deepCloneBytes() throws Exception {
+        return objectMapper.readValue(objectMapper.writeValueAsBytes(order), Order.class);
+    }
+}
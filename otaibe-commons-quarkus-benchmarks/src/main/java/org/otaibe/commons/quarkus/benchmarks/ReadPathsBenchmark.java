@@ -0,0 +1,69 @@
+package org.otaibe.commons.quarkus.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.otaibe.commons.quarkus.core.beans.CustomObjectMapperConfig;
+import org.otaibe.commons.quarkus.core.utils.JsonPathSelector;
+import org.otaibe.commons.quarkus.core.utils.JsonUtils;
+
+/**
+ * Allocation of the untyped reading of {@link JsonUtils} (the selected values of
+ * {@link JsonUtils#readPaths(byte[], JsonPathSelector)}) for a number heavy document, against
+ * reading it as a {@link Map} with jackson. Run with {@code -prof gc} and compare
+ * {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadPathsBenchmark {
+
+    private JsonUtils jsonUtils;
+    private ObjectMapper objectMapper;
+    private JsonPathSelector selector;
+    private byte[] document;
+
+    @Setup
+    public void setup() throws Exception {
+        objectMapper = new ObjectMapper();
+        jsonUtils = new JsonUtils(objectMapper, new CustomObjectMapperConfig());
+        selector = JsonPathSelector.compile("points");
+
+        final List<Map<String, Object>> points = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final Map<String, Object> point = new LinkedHashMap<>();
+            point.put("x", i * 1_000);
+            point.put("y", i * 1_000_000_000L);
+            point.put("timestamp", 1_700_000_000_000L + i);
+            points.add(point);
+        }
+        document = objectMapper.writeValueAsBytes(Map.of("points", points));
+    }
+
+    @Benchmark
+    public Optional<Map<String, Object>> jsonUtilsReadPaths() {
+        return jsonUtils.readPaths(document, selector);
+    }
+
+    @Benchmark
+    public Map<?, ?> jacksonReadValue() throws Exception {
+        return objectMapper.readValue(document, Map.class);
+    }
+}
@@ -0,0 +1,85 @@
+package org.otaibe.commons.quarkus.cache.service;
+
+/**
+ * Intrusive doubly linked list - the caller keeps the nodes, so unlinking and moving a node are O(1).
+ * Not thread safe.
+ */
+final class AccessOrderDeque<K> {
+
+    private Node<K> first;
+    private Node<K> last;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    Node<K> peekFirst() {
+        return first;
+    }
+
+    Node<K> pollFirst() {
+        final Node<K> node = first;
+        if (node != null) {
+            remove(node);
+        }
+        return node;
+    }
+
+    Node<K> pollLast() {
+        final Node<K> node = last;
+        if (node != null) {
+            remove(node);
+        }
+        return node;
+    }
+
+    void addLast(final Node<K> node) {
+        node.prev = last;
+        node.next = null;
+        if (last == null) {
+            first = node;
+        } else {
+            last.next = node;
+        }
+        last = node;
+        size++;
+    }
+
+    void remove(final Node<K> node) {
+        if (node.prev == null) {
+            first = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+        if (node.next == null) {
+            last = node.prev;
+        } else {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+        size--;
+    }
+
+    void moveToBack(final Node<K> node) {
+        if (node != last) {
+            remove(node);
+            addLast(node);
+        }
+    }
+
+    static class Node<K> {
+        final K key;
+        Node<K> prev;
+        Node<K> next;
+
+        Node(final K key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.otaibe.commons.quarkus.cache.service;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The started caches which have a <code>name</code>, e.g. to expose their statistics. A named cache
+ * is expected to live as long as the application, the registry keeps it reachable until it is
+ * unregistered.
+ */
+public final class CacheRegistry {
+
+    private static final Map<String, CacheService<?, ?>> CACHES = new ConcurrentHashMap<>();
+
+    private CacheRegistry() {
+    }
+
+    /**
+     * @return a read only view of the named caches
+     */
+    public static Map<String, CacheService<?, ?>> getAll() {
+        return Collections.unmodifiableMap(CACHES);
+    }
+
+    public static void unregister(final String name) {
+        CACHES.remove(name);
+    }
+
+    /**
+     * Removes the name only if it is still registered to the cache, a newer cache with the same name
+     * stays registered.
+     */
+    static boolean unregister(final String name, final CacheService<?, ?> cache) {
+        return CACHES.remove(name, cache);
+    }
+
+    /**
+     * @return the cache registered before under the same name
+     */
+    static CacheService<?, ?> register(final String name, final CacheService<?, ?> cache) {
+        return CACHES.put(name, cache);
+    }
+}
@@ -5,152 +5,749 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 import java.time.Duration;
-import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.function.ToLongBiFunction;
 
-@Builder
 @Getter(AccessLevel.PACKAGE)
 @Setter(AccessLevel.PACKAGE)
 @Slf4j
 public class CacheService<KEY, VALUE> {
     public static final String UNKNOWN = "UNKNOWN";
+    /**
+     * A started cache with a name is listed in the {@link CacheRegistry}.
+     */
+    private String name;
     private AtomicInteger numInCache;
 
     @Getter(AccessLevel.PRIVATE)
-    private Map<KEY, CacheTimeEntry<VALUE>> cache;
-    @Getter(AccessLevel.PRIVATE)
-    private Queue<KEY> cacheKeyQueue;
+    private Map<KEY, CacheTimeEntry<KEY, VALUE>> cache;
 
     private Integer maxNumInCache;
+    /**
+     * Weight of an entry, e.g. its approximate size in bytes. Must not be negative and is computed once
+     * per put.
+     */
+    private ToLongBiFunction<KEY, VALUE> weigher;
+    /**
+     * Maximum total weight of the entries, set together with the <code>weigher</code>. Can be combined
+     * with <code>maxNumInCache</code>. An entry heavier than it is not cached at all.
+     */
+    private Long maxWeight;
+    /**
+     * Used when <code>maxNumInCache</code> or <code>maxWeight</code> is set,
+     * {@link EvictionPolicy#windowTinyLfu()} by default.
+     */
+    private EvictionPolicy<KEY> evictionPolicy;
     private Function<Long, Duration> durationFunction;
     private Long duration;
+    /**
+     * Time source of the expiration, {@link Ticker#system()} by default.
+     */
+    private Ticker ticker;
+    /**
+     * Age after which a read still returns the cached value but triggers a single reload in the
+     * background. Should be shorter than the <code>duration</code>.
+     */
+    private Duration refreshAfter;
+    /**
+     * Used by {@link #getOrLoad(Object)} and to refresh the entries read by {@link #get(Object)}.
+     */
+    private Function<KEY, Mono<VALUE>> loader;
+    /**
+     * Runs the background reloads of <code>refreshAfter</code>, {@link Schedulers#boundedElastic()} by
+     * default, so a blocking or slow loader never delays the read which triggered it.
+     */
+    private Scheduler refreshScheduler;
+    /**
+     * Size of the off-heap tier, set together with the <code>valueCodec</code> and a maximum of the
+     * heap. The entries evicted from the heap are demoted to it and promoted back on a hit, keeping
+     * their write time.
+     */
+    private Long offHeapMaxBytes;
+    /**
+     * Size of one off-heap buffer, 64MB by default. A value larger than it is not demoted.
+     */
+    private Integer offHeapSlabBytes;
+    private ValueCodec<VALUE> valueCodec;
 
+    // the eviction policy and the timer wheel are updated only under the lock, replaying the buffered
+    // reads and writes
+    @Getter(AccessLevel.PRIVATE)
+    private ReentrantLock maintenanceLock;
+    @Getter(AccessLevel.PRIVATE)
+    private ReadBuffer<KEY> readBuffer;
+    @Getter(AccessLevel.PRIVATE)
+    private Queue<CacheTimeEntry<KEY, VALUE>> writeBuffer;
+    @Getter(AccessLevel.PRIVATE)
+    private TimerWheel<KEY, VALUE> timerWheel;
+    // one load per missing key, shared by all the callers of getOrLoad
+    @Getter(AccessLevel.PRIVATE)
+    private Map<KEY, Sinks.One<VALUE>> inFlight;
+    @Getter(AccessLevel.PRIVATE)
+    private Long refreshAfterNanos;
+    @Getter(AccessLevel.PRIVATE)
+    private AtomicLong totalWeight;
+    @Getter(AccessLevel.PRIVATE)
+    private OffHeapStore<KEY> offHeapStore;
+    @Getter(AccessLevel.PRIVATE)
+    private StatsCounter statsCounter;
+    // the periodic clean up of a cache with a duration, disposed by stop
+    @Getter(AccessLevel.PRIVATE)
+    private Disposable cleanUpTask;
+
+    /**
+     * The builder sets only the configuration, the internal state is created by {@link #start()}.
+     */
+    @Builder
+    CacheService(final String name,
+                 final Integer maxNumInCache,
+                 final ToLongBiFunction<KEY, VALUE> weigher,
+                 final Long maxWeight,
+                 final EvictionPolicy<KEY> evictionPolicy,
+                 final Function<Long, Duration> durationFunction,
+                 final Long duration,
+                 final Ticker ticker,
+                 final Duration refreshAfter,
+                 final Function<KEY, Mono<VALUE>> loader,
+                 final Scheduler refreshScheduler,
+                 final Long offHeapMaxBytes,
+                 final Integer offHeapSlabBytes,
+                 final ValueCodec<VALUE> valueCodec) {
+        this.name = name;
+        this.maxNumInCache = maxNumInCache;
+        this.weigher = weigher;
+        this.maxWeight = maxWeight;
+        this.evictionPolicy = evictionPolicy;
+        this.durationFunction = durationFunction;
+        this.duration = duration;
+        this.ticker = ticker;
+        this.refreshAfter = refreshAfter;
+        this.loader = loader;
+        this.refreshScheduler = refreshScheduler;
+        this.offHeapMaxBytes = offHeapMaxBytes;
+        this.offHeapSlabBytes = offHeapSlabBytes;
+        this.valueCodec = valueCodec;
+    }
 
     public CacheService<KEY, VALUE> start() {
         log.info("CacheService start");
         numInCache = new AtomicInteger(0);
+        totalWeight = new AtomicLong(0);
+        statsCounter = new StatsCounter();
         cache = new ConcurrentHashMap<>();
-        Optional.ofNullable(getMaxNumInCache()).ifPresent(integer -> {
-            cacheKeyQueue = new ConcurrentLinkedQueue<>();
-        });
+        inFlight = new ConcurrentHashMap<>();
+        if (getTicker() == null) {
+            ticker = Ticker.system();
+        }
+        if (getRefreshScheduler() == null) {
+            refreshScheduler = Schedulers.boundedElastic();
+        }
+        refreshAfterNanos = Optional.ofNullable(getRefreshAfter())
+                .map(Duration::toNanos)
+                .orElse(null);
+        maintenanceLock = new ReentrantLock();
+        writeBuffer = new ConcurrentLinkedQueue<>();
+        if (getWeigher() != null || getMaxWeight() != null) {
+            if (getWeigher() == null || getMaxWeight() == null) {
+                throw new RuntimeException("weigher and maxWeight should be set together");
+            }
+        }
+        // a weighted policy sizes its segments by weight
+        Optional.ofNullable(getMaxWeight())
+                .or(() -> Optional.ofNullable(getMaxNumInCache()).map(Integer::longValue))
+                .ifPresent(maximum -> {
+                    if (getEvictionPolicy() == null) {
+                        evictionPolicy = EvictionPolicy.windowTinyLfu();
+                    }
+                    getEvictionPolicy().init(maximum);
+                    readBuffer = new ReadBuffer<>();
+                });
+        if (getOffHeapMaxBytes() != null || getValueCodec() != null) {
+            if (getOffHeapMaxBytes() == null || getValueCodec() == null) {
+                throw new RuntimeException("offHeapMaxBytes and valueCodec should be set together");
+            }
+            if (getEvictionPolicy() == null) {
+                throw new RuntimeException("offHeapMaxBytes requires maxNumInCache or maxWeight");
+            }
+            offHeapStore = new OffHeapStore<>(getOffHeapMaxBytes(),
+                    Optional.ofNullable(getOffHeapSlabBytes()).orElse(OffHeapStore.DEFAULT_SLAB_BYTES));
+        }
 
         if (getDuration() != null || getDurationFunction() != null) {
             if (getDuration() == null || getDurationFunction() == null) {
                 throw new RuntimeException("durationFunction and duration should be set together");
             }
+            timerWheel = new TimerWheel<>(getTicker().read(), getDurationFunction().apply(getDuration()).toNanos());
 
-            Flux.interval(getDurationFunction().apply(1l))
+            cleanUpTask = Flux.interval(getDurationFunction().apply(1l))
                     .retry()
                     .doOnNext(aLong -> {
-                        LocalDateTime threshold = LocalDateTime.now().minus(getDurationFunction().apply(getDuration()));
-                        log.debug("will clear cache by duration. numItems={}, maxInCache={}, firstDate={}, threshold={}",
+                        log.debug("will clear cache by duration. numItems={}, maxInCache={}",
                                 getNumInCache().get(),
-                                getMaxNumInCache(),
-                                Optional.ofNullable(getMaxNumInCache())
-                                .map(integer -> getCacheKeyQueue().peek())
-                                .map(key -> getCache().get(key))
-                                .map(valueCacheTimeEntry -> valueCacheTimeEntry.getDateTime())
-                                .map(dateTime -> dateTime.toString())
-                                .orElse(UNKNOWN),
-                                threshold
+                                getMaxNumInCache()
                         );
-                        clearByDateTime(threshold);
-                        log.debug("cleared cache by duration. numItems={}, maxInCache={}, firstDate={}, threshold={}",
+                        cleanUp();
+                        log.debug("cleared cache by duration. numItems={}, maxInCache={}",
                                 getNumInCache().get(),
-                                getMaxNumInCache(),
-                                Optional.ofNullable(getMaxNumInCache())
-                                        .map(integer -> getCacheKeyQueue().peek())
-                                        .map(key -> getCache().get(key))
-                                        .map(valueCacheTimeEntry -> valueCacheTimeEntry.getDateTime())
-                                        .map(dateTime -> dateTime.toString())
-                                        .orElse(UNKNOWN),
-                                threshold
+                                getMaxNumInCache()
                         );
                     })
                     .subscribe();
         }
 
+        Optional.ofNullable(getName())
+                .map(name1 -> CacheRegistry.register(name1, this))
+                .ifPresent(previous -> log.warn("replaced the registered cache name={}", getName()));
+
         log.info("CacheService started");
         return this;
     }
 
+    /**
+     * Cancels the periodic clean up and removes the cache from the {@link CacheRegistry}, so a cache
+     * which is no longer used can be collected. The entries stay readable.
+     */
+    public void stop() {
+        log.info("CacheService stop");
+        Optional.ofNullable(getCleanUpTask()).ifPresent(Disposable::dispose);
+        Optional.ofNullable(getName()).ifPresent(name1 -> CacheRegistry.unregister(name1, this));
+        log.info("CacheService stopped");
+    }
+
     public VALUE get(KEY key) {
-        return Optional.ofNullable(key)
-                .map(key1 -> getCache().get(key1))
-                .filter(entry -> entry.getDateTime() != null)
-                .map(entry -> entry.getValue())
-                .orElse(null);
+        return recordLookup(getIfPresent(key, getLoader()));
+    }
+
+    /**
+     * @return the total weight of the entries in the cache, their number when there is no <code>weigher</code>
+     */
+    public long getWeight() {
+        return getTotalWeight().get();
+    }
+
+    public CacheStats stats() {
+        return getStatsCounter().snapshot()
+                .size(getNumInCache().get())
+                .weight(getWeight())
+                .offHeapSize(Optional.ofNullable(getOffHeapStore()).map(OffHeapStore::size).orElse(0))
+                .build();
+    }
+
+    /**
+     * Same as {@link #getOrLoad(Object, Function)} with the <code>loader</code> of the builder.
+     */
+    public Mono<VALUE> getOrLoad(KEY key) {
+        if (getLoader() == null) {
+            return Mono.error(new RuntimeException("loader is not set"));
+        }
+        return getOrLoad(key, getLoader());
+    }
+
+    /**
+     * Returns the cached value or loads it. Concurrent misses of the same key share a single load, so
+     * there is exactly one call of the loader per miss. A failed or empty load is not cached and every
+     * waiter gets its result. The load runs independently of the waiters - cancelling one of them (or
+     * all of them) doesn't abort it, the value is still cached when it arrives.
+     */
+    public Mono<VALUE> getOrLoad(KEY key, Function<KEY, Mono<VALUE>> loader) {
+        if (key == null) {
+            return Mono.error(new RuntimeException("key should not be null"));
+        }
+        return Mono.defer(() -> {
+            VALUE cached = recordLookup(getIfPresent(key, loader));
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            Sinks.One<VALUE> sink = Sinks.one();
+            Sinks.One<VALUE> existing = getInFlight().putIfAbsent(key, sink);
+            if (existing != null) {
+                return existing.asMono();
+            }
+            // a load may have completed between the miss and the registration
+            cached = getIfPresent(key, loader);
+            if (cached != null) {
+                getInFlight().remove(key, sink);
+                sink.tryEmitValue(cached);
+                return Mono.just(cached);
+            }
+            load(key, loader, sink, null);
+            return sink.asMono();
+        });
     }
 
     public VALUE put(KEY key, VALUE value) {
         if (key == null) {
             throw new RuntimeException("key should not be null");
         }
-        boolean isNotInCache = !getCache().containsKey(key);
-        getCache().put(key, CacheTimeEntry.<VALUE>builder()
-                .dateTime(LocalDateTime.now())
+        if (store(key, value)) {
+            getStatsCounter().recordPut();
+        }
+        return value;
+    }
+
+    public void remove(KEY key) {
+        if (invalidate(key)) {
+            getStatsCounter().recordRemoval();
+        }
+    }
+
+    /**
+     * Replays the pending reads and writes and removes the expired entries. Called periodically when
+     * <code>duration</code> is set.
+     */
+    public void cleanUp() {
+        getMaintenanceLock().lock();
+        try {
+            maintenance();
+        } finally {
+            getMaintenanceLock().unlock();
+        }
+    }
+
+    /**
+     * @return null if the value is heavier than <code>maxWeight</code>
+     */
+    private CacheTimeEntry<KEY, VALUE> newEntry(KEY key, VALUE value) {
+        long weight = weigh(key, value);
+        if (getMaxWeight() != null && weight > getMaxWeight()) {
+            log.debug("not cached, too heavy: key={}, weight={}, maxWeight={}", key, weight, getMaxWeight());
+            return null;
+        }
+        return CacheTimeEntry.<KEY, VALUE>builder()
+                .key(key)
                 .value(value)
-                .build());
-        if (isNotInCache) {
-            int num = getNumInCache().incrementAndGet();
-            if (getMaxNumInCache() != null) {
-                if (num > getMaxNumInCache()) {
-                    KEY key1 = getCacheKeyQueue().poll();
-                    removeFromCacheOnly(key1);
-                }
-                getCacheKeyQueue().add(key);
+                .writeNanos(getTicker().read())
+                .weight(weight)
+                .build();
+    }
+
+    /**
+     * Writes the value of a put or of a loaded miss, only the former is counted as a put.
+     *
+     * @return false if the value is heavier than <code>maxWeight</code> and the key has been removed
+     */
+    private boolean store(KEY key, VALUE value) {
+        CacheTimeEntry<KEY, VALUE> entry = newEntry(key, value);
+        if (entry == null) {
+            invalidate(key);
+            return false;
+        }
+        CacheTimeEntry<KEY, VALUE> previous = getCache().put(key, entry);
+        onWrite(entry, previous);
+        log.debug("put completed: key={}, wasNotInCache={}", key, previous == null);
+        return true;
+    }
+
+    /**
+     * Accounts an entry which has just been stored in the map.
+     *
+     * @param previous the entry it replaced, null if the key was not in the heap
+     */
+    private void onWrite(CacheTimeEntry<KEY, VALUE> entry, CacheTimeEntry<KEY, VALUE> previous) {
+        getTotalWeight().addAndGet(previous == null ? entry.getWeight() : entry.getWeight() - previous.getWeight());
+        if (previous == null) {
+            getNumInCache().incrementAndGet();
+        } else if (getTimerWheel() != null) {
+            // to be descheduled
+            getWriteBuffer().add(previous);
+        }
+        if (getOffHeapStore() != null) {
+            // a demoted value is stale now
+            getOffHeapStore().remove(entry.getKey());
+        }
+        recordWrite(entry);
+    }
+
+    /**
+     * Swaps a refreshed entry for its reloaded value, only if it is still the entry in the cache. The
+     * value is dropped when the key has been put, removed, evicted or expired during the reload.
+     */
+    private void replaceRefreshed(CacheTimeEntry<KEY, VALUE> refreshed, VALUE value) {
+        KEY key = refreshed.getKey();
+        CacheTimeEntry<KEY, VALUE> entry = newEntry(key, value);
+        if (entry == null) {
+            if (getCache().remove(key, refreshed)) {
+                onRemoved(refreshed);
+                recordWrite(refreshed);
             }
+            return;
+        }
+        if (getCache().replace(key, refreshed, entry)) {
+            onWrite(entry, refreshed);
+        } else {
+            log.debug("refreshed value dropped, the entry has changed: key={}", key);
+        }
+    }
+
+    /**
+     * @return true if the key was in the heap
+     */
+    private boolean invalidate(KEY key) {
+        CacheTimeEntry<KEY, VALUE> entry = removeFromCacheOnly(key);
+        if (entry != null) {
+            recordWrite(entry);
+        }
+        if (getOffHeapStore() != null) {
+            // an eviction which took the entry before us may still be demoting it, the off heap copy is
+            // removed once it's done or it would come back on the next read
+            getMaintenanceLock().lock();
+            try {
+                getOffHeapStore().remove(key);
+            } finally {
+                getMaintenanceLock().unlock();
+            }
+        }
+        return entry != null;
+    }
+
+    private VALUE recordLookup(VALUE value) {
+        if (value == null) {
+            getStatsCounter().recordMiss();
+        } else {
+            getStatsCounter().recordHit();
         }
-        log.debug("put completed: wasNotInCache={} MaxNumInCache={} approxNumInCache={}, numInCache={}",
-                isNotInCache,
-                getMaxNumInCache(),
-                getCache().keySet().size(),
-                getNumInCache().get()
-                );
         return value;
     }
 
-    public void remove(KEY key) {
-        if (getCacheKeyQueue() != null) {
-            boolean result = getCacheKeyQueue().remove(key);
-            log.debug("removed key={}, result={}", key, result);
+    private VALUE getIfPresent(KEY key, Function<KEY, Mono<VALUE>> loader) {
+        return Optional.ofNullable(key)
+                .map(key1 -> Optional.ofNullable(getCache().get(key1)).orElseGet(() -> promote(key1)))
+                .filter(entry -> !expireIfDue(entry))
+                .map(entry -> {
+                    recordRead(key);
+                    refreshIfDue(entry, loader);
+                    return entry.getValue();
+                })
+                .orElse(null);
+    }
+
+    /**
+     * Starts a background reload of an entry older than <code>refreshAfter</code>, unless one is in
+     * flight already. The reader gets the current value without waiting.
+     */
+    private void refreshIfDue(CacheTimeEntry<KEY, VALUE> entry, Function<KEY, Mono<VALUE>> loader) {
+        if (getRefreshAfterNanos() == null
+                || loader == null
+                || getTicker().read() - entry.getWriteNanos() < getRefreshAfterNanos()
+                || getInFlight().containsKey(entry.getKey())) {
+            return;
+        }
+        Sinks.One<VALUE> sink = Sinks.one();
+        if (getInFlight().putIfAbsent(entry.getKey(), sink) == null) {
+            log.debug("refreshing key={}", entry.getKey());
+            load(entry.getKey(), loader, sink, entry);
+        }
+    }
+
+    /**
+     * A miss is loaded in the thread of the subscriber, a refresh on the <code>refreshScheduler</code>.
+     *
+     * @param refreshed the entry being refreshed, see {@link #replaceRefreshed(CacheTimeEntry, Object)};
+     *                  null for a miss
+     */
+    private void load(KEY key, Function<KEY, Mono<VALUE>> loader, Sinks.One<VALUE> sink,
+                      CacheTimeEntry<KEY, VALUE> refreshed) {
+        long start = getTicker().read();
+        Mono<VALUE> load = Mono.defer(() -> loader.apply(key));
+        if (refreshed != null) {
+            load = load.subscribeOn(getRefreshScheduler());
+        }
+        load
+                .subscribe(
+                        value -> {
+                            getStatsCounter().recordLoad(true, getTicker().read() - start);
+                            // cached before the in flight load is dropped, so a miss in between finds one of them
+                            if (refreshed == null) {
+                                store(key, value);
+                            } else {
+                                replaceRefreshed(refreshed, value);
+                            }
+                            getInFlight().remove(key, sink);
+                            sink.tryEmitValue(value);
+                        },
+                        throwable -> {
+                            getStatsCounter().recordLoad(false, getTicker().read() - start);
+                            log.debug("unable to load key={}", key, throwable);
+                            getInFlight().remove(key, sink);
+                            sink.tryEmitError(throwable);
+                        },
+                        () -> {
+                            if (getInFlight().remove(key, sink)) {
+                                // completed empty
+                                getStatsCounter().recordLoad(false, getTicker().read() - start);
+                                sink.tryEmitEmpty();
+                            }
+                        });
+    }
+
+    /**
+     * Moves the entry of the key back from the off-heap tier, unless it has expired there.
+     *
+     * @return the entry in the cache, null if there is none in any tier
+     */
+    private CacheTimeEntry<KEY, VALUE> promote(KEY key) {
+        if (getOffHeapStore() == null) {
+            return null;
+        }
+        OffHeapStore.Record record = getOffHeapStore().take(key);
+        if (record == null) {
+            return null;
+        }
+        if (getTimerWheel() != null && getTicker().read() - record.writeNanos >= getTimerWheel().getExpireAfterNanos()) {
+            return null;
+        }
+        VALUE value;
+        try {
+            value = getValueCodec().decode(record.bytes);
+        } catch (RuntimeException e) {
+            log.warn("unable to decode the off heap value of key={}", key, e);
+            return null;
+        }
+        long weight = weigh(key, value);
+        if (getMaxWeight() != null && weight > getMaxWeight()) {
+            return null;
+        }
+        CacheTimeEntry<KEY, VALUE> entry = CacheTimeEntry.<KEY, VALUE>builder()
+                .key(key)
+                .value(value)
+                .writeNanos(record.writeNanos)
+                .weight(weight)
+                .build();
+        // a concurrent put wins
+        CacheTimeEntry<KEY, VALUE> current = getCache().putIfAbsent(key, entry);
+        if (current != null) {
+            return current;
+        }
+        getTotalWeight().addAndGet(weight);
+        getNumInCache().incrementAndGet();
+        log.debug("promoted key={}", key);
+        recordWrite(entry);
+        return entry;
+    }
+
+    /**
+     * Called under the maintenance lock with an entry evicted from the heap.
+     */
+    private void demote(CacheTimeEntry<KEY, VALUE> entry) {
+        if (getOffHeapStore() == null || entry.getValue() == null) {
+            return;
+        }
+        boolean stored;
+        try {
+            stored = getOffHeapStore().put(entry.getKey(), entry.getWriteNanos(), getValueCodec().encode(entry.getValue()));
+        } catch (RuntimeException e) {
+            log.warn("unable to encode the value of key={}", entry.getKey(), e);
+            return;
+        }
+        // a put racing with the eviction may have missed the stored value, it is stale then
+        if (stored && getCache().containsKey(entry.getKey())) {
+            getOffHeapStore().remove(entry.getKey());
+        }
+    }
+
+    /**
+     * Expired entries are removed lazily when read, so a read never returns a value older than the
+     * <code>duration</code> whatever the period of the background sweep.
+     */
+    private boolean expireIfDue(CacheTimeEntry<KEY, VALUE> entry) {
+        if (getTimerWheel() == null || !getTimerWheel().isExpired(entry, getTicker().read())) {
+            return false;
+        }
+        if (getCache().remove(entry.getKey(), entry)) {
+            onRemoved(entry);
+            getStatsCounter().recordExpiration();
+            recordWrite(entry);
+        }
+        return true;
+    }
+
+    private void recordRead(KEY key) {
+        if (getReadBuffer() != null && getReadBuffer().offer(key)) {
+            drainBuffers();
+        }
+    }
+
+    private void recordWrite(CacheTimeEntry<KEY, VALUE> entry) {
+        if (getEvictionPolicy() != null || getTimerWheel() != null) {
+            getWriteBuffer().add(entry);
+            drainBuffers();
+        }
+    }
+
+    /**
+     * Never blocks: if another thread holds the lock it loops until the write buffer is empty, so a
+     * write added meanwhile is not missed.
+     */
+    private void drainBuffers() {
+        do {
+            if (!getMaintenanceLock().tryLock()) {
+                return;
+            }
+            try {
+                maintenance();
+            } finally {
+                getMaintenanceLock().unlock();
+            }
+        } while (!getWriteBuffer().isEmpty());
+    }
+
+    /**
+     * Replays the buffered reads and writes into the eviction policy and the timer wheel, expires the
+     * entries which are due and evicts while the cache is over its maximum.
+     */
+    private void maintenance() {
+        if (getReadBuffer() != null) {
+            getReadBuffer().drainTo(key -> {
+                if (getEvictionPolicy().contains(key)) {
+                    getEvictionPolicy().onAccess(key);
+                }
+            });
+        }
+        CacheTimeEntry<KEY, VALUE> entry;
+        while ((entry = getWriteBuffer().poll()) != null) {
+            reconcile(entry);
+        }
+        if (getTimerWheel() != null) {
+            getTimerWheel().advance(getTicker().read(), this::expire);
+        }
+        if (getEvictionPolicy() != null) {
+            evict();
+        }
+    }
+
+    /**
+     * The writes are replayed against the current content of the map, so their order across threads
+     * doesn't matter.
+     */
+    private void reconcile(CacheTimeEntry<KEY, VALUE> entry) {
+        KEY key = entry.getKey();
+        boolean alive = getCache().get(key) == entry;
+        if (getTimerWheel() != null) {
+            if (alive) {
+                getTimerWheel().schedule(entry);
+            } else {
+                getTimerWheel().deschedule(entry);
+            }
+        }
+        if (getEvictionPolicy() == null) {
+            return;
+        }
+        boolean inPolicy = getEvictionPolicy().contains(key);
+        if (alive) {
+            if (inPolicy) {
+                getEvictionPolicy().onUpdate(key, entry.getWeight());
+            } else {
+                getEvictionPolicy().onInsert(key, entry.getWeight());
+            }
+        } else if (inPolicy && !getCache().containsKey(key)) {
+            getEvictionPolicy().onRemove(key);
+        }
+    }
+
+    private void expire(CacheTimeEntry<KEY, VALUE> entry) {
+        if (!getCache().remove(entry.getKey(), entry)) {
+            return;
+        }
+        int numLeft = onRemoved(entry);
+        getStatsCounter().recordExpiration();
+        if (getEvictionPolicy() != null && !getCache().containsKey(entry.getKey())) {
+            getEvictionPolicy().onRemove(entry.getKey());
+        }
+        log.debug("expired key={}, numLeft={}", entry.getKey(), numLeft);
+    }
+
+    private void evict() {
+        while (isOverCapacity()) {
+            KEY victim = getEvictionPolicy().evict();
+            if (victim == null) {
+                return;
+            }
+            CacheTimeEntry<KEY, VALUE> entry = removeFromCacheOnly(victim);
+            if (entry == null) {
+                continue;
+            }
+            getStatsCounter().recordSizeEviction();
+            if (getTimerWheel() != null) {
+                getTimerWheel().deschedule(entry);
+            }
+            demote(entry);
+        }
+    }
+
+    private boolean isOverCapacity() {
+        return (getMaxNumInCache() != null && getNumInCache().get() > getMaxNumInCache())
+                || (getMaxWeight() != null && getTotalWeight().get() > getMaxWeight());
+    }
+
+    private long weigh(KEY key, VALUE value) {
+        if (getWeigher() == null) {
+            return 1;
+        }
+        long weight = getWeigher().applyAsLong(key, value);
+        if (weight < 0) {
+            throw new RuntimeException("weight should not be negative: key=" + key + ", weight=" + weight);
         }
-        removeFromCacheOnly(key);
+        return weight;
     }
 
-    void clearByDateTime(LocalDateTime threshold) {
-        getCache().entrySet().stream()
-                .filter(entry -> entry.getValue().getDateTime().isBefore(threshold))
-                .map(entry -> entry.getKey())
-                .collect(Collectors.toList())
-                .forEach(key -> remove(key));
+    /**
+     * @return the number of entries left
+     */
+    private int onRemoved(CacheTimeEntry<KEY, VALUE> entry) {
+        getTotalWeight().addAndGet(-entry.getWeight());
+        return getNumInCache().decrementAndGet();
     }
 
-    private void removeFromCacheOnly(KEY key) {
-        CacheTimeEntry<VALUE> entry = getCache().remove(key);
-        int numLeft = getNumInCache().decrementAndGet();
-        log.debug("removed key={}, dateTime={}, numLeft={}",
+    private CacheTimeEntry<KEY, VALUE> removeFromCacheOnly(KEY key) {
+        CacheTimeEntry<KEY, VALUE> entry = getCache().remove(key);
+        int numLeft = entry == null ? getNumInCache().get() : onRemoved(entry);
+        log.debug("removed key={}, writeNanos={}, numLeft={}",
                 key,
-                Optional.ofNullable(entry).map(CacheTimeEntry::getDateTime),
+                Optional.ofNullable(entry).map(CacheTimeEntry::getWriteNanos),
                 numLeft
         );
+        return entry;
     }
 
-    @Builder
     @Getter
-    public static final class CacheTimeEntry<V> {
-        private LocalDateTime dateTime;
-        private V value;
+    public static final class CacheTimeEntry<K, V> {
+        private final K key;
+        private final V value;
+        /**
+         * {@link Ticker} time of the write.
+         */
+        private final long writeNanos;
+        private final long weight;
+
+        // links of the timer wheel bucket, guarded by the maintenance lock
+        @Getter(AccessLevel.NONE)
+        CacheTimeEntry<K, V> previousInTimer;
+        @Getter(AccessLevel.NONE)
+        CacheTimeEntry<K, V> nextInTimer;
+
+        @Builder
+        CacheTimeEntry(final K key, final V value, final long writeNanos, final long weight) {
+            this.key = key;
+            this.value = value;
+            this.writeNanos = writeNanos;
+            this.weight = weight;
+        }
     }
 }
 
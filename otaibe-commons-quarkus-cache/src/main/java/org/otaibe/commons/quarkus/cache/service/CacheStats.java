@@ -0,0 +1,53 @@
+package org.otaibe.commons.quarkus.cache.service;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Point in time snapshot of the statistics of a {@link CacheService}. The counters are cumulative
+ * since the start of the cache.
+ */
+@Value
+@Builder
+public class CacheStats {
+    /**
+     * Upper bounds of the buckets of the load time histogram, the last bucket of
+     * {@link #getLoadTimeCounts()} counts the slower loads.
+     */
+    public static final long[] LOAD_TIME_BOUNDS_MILLIS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000};
+
+    long hitCount;
+    long missCount;
+    /** Explicit {@link CacheService#put(Object, Object)} calls, the loaded values are counted as loads. */
+    long putCount;
+    /** Entries removed by {@link CacheService#remove(Object)}. */
+    long removalCount;
+    /** Entries evicted because the cache was over its maximum size or weight. */
+    long sizeEvictionCount;
+    long expirationCount;
+    long loadSuccessCount;
+    /** Failed loads and loads completed without a value. */
+    long loadFailureCount;
+    long totalLoadNanos;
+    long[] loadTimeCounts;
+    int size;
+    long weight;
+    int offHeapSize;
+
+    public long getRequestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * @return 0 before the first request
+     */
+    public double getHitRate() {
+        final long requestCount = getRequestCount();
+        return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+    }
+
+    public long getAverageLoadNanos() {
+        final long loadCount = loadSuccessCount + loadFailureCount;
+        return loadCount == 0 ? 0 : totalLoadNanos / loadCount;
+    }
+}
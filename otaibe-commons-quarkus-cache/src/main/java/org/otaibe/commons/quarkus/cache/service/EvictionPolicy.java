@@ -0,0 +1,460 @@
+package org.otaibe.commons.quarkus.cache.service;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * Decides which key leaves a size bounded {@link CacheService}. All the operations are O(1). The
+ * policy is not thread safe - the cache replays the buffered reads and writes into it under a lock,
+ * so a new instance is needed for every cache.
+ */
+public interface EvictionPolicy<K> {
+
+    /** Called once by the cache with its maximum size, or with its maximum weight when it is weighted. */
+    default void init(final long maximum) {
+    }
+
+    void onInsert(K key);
+
+    /** Insert of a weighted entry, the weight is ignored unless the policy sizes its segments by it. */
+    default void onInsert(final K key, final long weight) {
+        onInsert(key);
+    }
+
+    /** A read hit or an update of a key already in the policy. */
+    void onAccess(K key);
+
+    /** Update of a key already in the policy with the weight of its new value. */
+    default void onUpdate(final K key, final long weight) {
+        onAccess(key);
+    }
+
+    void onRemove(K key);
+
+    boolean contains(K key);
+
+    int size();
+
+    /**
+     * Removes the key which should be evicted from the policy.
+     *
+     * @return the key, null if the policy is empty
+     */
+    K evict();
+
+    /** Insertion order, accesses are ignored. */
+    static <K> EvictionPolicy<K> fifo() {
+        return new Fifo<>();
+    }
+
+    static <K> EvictionPolicy<K> lru() {
+        return new Lru<>();
+    }
+
+    /** Least frequently used, the least recently used of them on a tie. */
+    static <K> EvictionPolicy<K> lfu() {
+        return new Lfu<>();
+    }
+
+    /**
+     * Window TinyLFU: new keys enter a small LRU window; when the window overflows its oldest key is
+     * admitted into the main segmented LRU only if it has been seen more often recently than the
+     * main's victim. Keeps the hit rate of LFU on skewed workloads and still adapts to bursts.
+     */
+    static <K> EvictionPolicy<K> windowTinyLfu() {
+        return new WindowTinyLfu<>();
+    }
+
+    final class Fifo<K> implements EvictionPolicy<K> {
+        private final Map<K, AccessOrderDeque.Node<K>> nodes = new HashMap<>();
+        private final AccessOrderDeque<K> deque = new AccessOrderDeque<>();
+
+        private Fifo() {
+        }
+
+        @Override
+        public void onInsert(final K key) {
+            final AccessOrderDeque.Node<K> node = new AccessOrderDeque.Node<>(key);
+            if (nodes.putIfAbsent(key, node) == null) {
+                deque.addLast(node);
+            }
+        }
+
+        @Override
+        public void onAccess(final K key) {
+        }
+
+        @Override
+        public void onRemove(final K key) {
+            final AccessOrderDeque.Node<K> node = nodes.remove(key);
+            if (node != null) {
+                deque.remove(node);
+            }
+        }
+
+        @Override
+        public boolean contains(final K key) {
+            return nodes.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return nodes.size();
+        }
+
+        @Override
+        public K evict() {
+            final AccessOrderDeque.Node<K> node = deque.pollFirst();
+            if (node == null) {
+                return null;
+            }
+            nodes.remove(node.key);
+            return node.key;
+        }
+    }
+
+    final class Lru<K> implements EvictionPolicy<K> {
+        private final Map<K, AccessOrderDeque.Node<K>> nodes = new HashMap<>();
+        private final AccessOrderDeque<K> deque = new AccessOrderDeque<>();
+
+        private Lru() {
+        }
+
+        @Override
+        public void onInsert(final K key) {
+            final AccessOrderDeque.Node<K> node = nodes.get(key);
+            if (node != null) {
+                deque.moveToBack(node);
+                return;
+            }
+            final AccessOrderDeque.Node<K> created = new AccessOrderDeque.Node<>(key);
+            nodes.put(key, created);
+            deque.addLast(created);
+        }
+
+        @Override
+        public void onAccess(final K key) {
+            final AccessOrderDeque.Node<K> node = nodes.get(key);
+            if (node != null) {
+                deque.moveToBack(node);
+            }
+        }
+
+        @Override
+        public void onRemove(final K key) {
+            final AccessOrderDeque.Node<K> node = nodes.remove(key);
+            if (node != null) {
+                deque.remove(node);
+            }
+        }
+
+        @Override
+        public boolean contains(final K key) {
+            return nodes.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return nodes.size();
+        }
+
+        @Override
+        public K evict() {
+            final AccessOrderDeque.Node<K> node = deque.pollFirst();
+            if (node == null) {
+                return null;
+            }
+            nodes.remove(node.key);
+            return node.key;
+        }
+    }
+
+    /** Constant time LFU - a list of frequency buckets, each keeping its keys in access order. */
+    final class Lfu<K> implements EvictionPolicy<K> {
+        private final Map<K, Bucket<K>> buckets = new HashMap<>();
+        // the bucket with the lowest frequency
+        private Bucket<K> first;
+
+        private Lfu() {
+        }
+
+        @Override
+        public void onInsert(final K key) {
+            if (buckets.containsKey(key)) {
+                onAccess(key);
+                return;
+            }
+            final Bucket<K> bucket = first != null && first.frequency == 1 ? first : insertAfter(null, 1);
+            bucket.keys.add(key);
+            buckets.put(key, bucket);
+        }
+
+        @Override
+        public void onAccess(final K key) {
+            final Bucket<K> bucket = buckets.get(key);
+            if (bucket == null) {
+                return;
+            }
+            final Bucket<K> next = bucket.next != null && bucket.next.frequency == bucket.frequency + 1 ?
+                    bucket.next : insertAfter(bucket, bucket.frequency + 1);
+            next.keys.add(key);
+            buckets.put(key, next);
+            removeFrom(bucket, key);
+        }
+
+        @Override
+        public void onRemove(final K key) {
+            final Bucket<K> bucket = buckets.remove(key);
+            if (bucket != null) {
+                removeFrom(bucket, key);
+            }
+        }
+
+        @Override
+        public boolean contains(final K key) {
+            return buckets.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return buckets.size();
+        }
+
+        @Override
+        public K evict() {
+            if (first == null) {
+                return null;
+            }
+            final Bucket<K> bucket = first;
+            final K key = bucket.keys.iterator().next();
+            buckets.remove(key);
+            removeFrom(bucket, key);
+            return key;
+        }
+
+        private Bucket<K> insertAfter(final Bucket<K> previous, final long frequency) {
+            final Bucket<K> bucket = new Bucket<>(frequency);
+            bucket.prev = previous;
+            bucket.next = previous == null ? first : previous.next;
+            if (bucket.next != null) {
+                bucket.next.prev = bucket;
+            }
+            if (previous == null) {
+                first = bucket;
+            } else {
+                previous.next = bucket;
+            }
+            return bucket;
+        }
+
+        private void removeFrom(final Bucket<K> bucket, final K key) {
+            bucket.keys.remove(key);
+            if (!bucket.keys.isEmpty()) {
+                return;
+            }
+            if (bucket.prev == null) {
+                first = bucket.next;
+            } else {
+                bucket.prev.next = bucket.next;
+            }
+            if (bucket.next != null) {
+                bucket.next.prev = bucket.prev;
+            }
+        }
+
+        private static final class Bucket<K> {
+            private final long frequency;
+            private final LinkedHashSet<K> keys = new LinkedHashSet<>();
+            private Bucket<K> prev;
+            private Bucket<K> next;
+
+            private Bucket(final long frequency) {
+                this.frequency = frequency;
+            }
+        }
+    }
+
+    /**
+     * The segments are bounded by the weight of their entries when the cache is weighted - the
+     * maximum given to {@link #init(long)} is then a weight and every insert without one weighs 1.
+     */
+    final class WindowTinyLfu<K> implements EvictionPolicy<K> {
+        private static final int WINDOW = 0;
+        private static final int PROBATION = 1;
+        private static final int PROTECTED = 2;
+        private static final int WINDOW_PERCENT = 1;
+        private static final int PROTECTED_PERCENT = 80;
+        private static final long DEFAULT_MAXIMUM = 1_000;
+        // the sketch grows with the number of keys, a maximum weight says nothing about it
+        private static final long INITIAL_SKETCH_SIZE = 1 << 16;
+
+        private final Map<K, Node<K>> nodes = new HashMap<>();
+        private final AccessOrderDeque<K> window = new AccessOrderDeque<>();
+        private final AccessOrderDeque<K> probation = new AccessOrderDeque<>();
+        private final AccessOrderDeque<K> protectedDeque = new AccessOrderDeque<>();
+        private FrequencySketch sketch;
+        private long windowMaximum;
+        private long protectedMaximum;
+        private long windowWeight;
+        private long protectedWeight;
+
+        private WindowTinyLfu() {
+        }
+
+        @Override
+        public void init(final long maximum) {
+            windowMaximum = Math.max(1, maximum * WINDOW_PERCENT / 100);
+            protectedMaximum = (maximum - windowMaximum) * PROTECTED_PERCENT / 100;
+            sketch = new FrequencySketch(Math.min(maximum, INITIAL_SKETCH_SIZE));
+        }
+
+        @Override
+        public void onInsert(final K key) {
+            onInsert(key, 1);
+        }
+
+        @Override
+        public void onInsert(final K key, final long weight) {
+            if (nodes.containsKey(key)) {
+                onUpdate(key, weight);
+                return;
+            }
+            ensureInitialized();
+            final Node<K> node = new Node<>(key, weight);
+            nodes.put(key, node);
+            sketch = sketch.ensureCapacity(nodes.size());
+            sketch.increment(key);
+            window.addLast(node);
+            windowWeight += weight;
+            drainWindow();
+        }
+
+        @Override
+        public void onAccess(final K key) {
+            final Node<K> node = nodes.get(key);
+            if (node == null) {
+                return;
+            }
+            sketch.increment(key);
+            switch (node.queue) {
+                case WINDOW:
+                    window.moveToBack(node);
+                    break;
+                case PROBATION:
+                    probation.remove(node);
+                    node.queue = PROTECTED;
+                    protectedDeque.addLast(node);
+                    protectedWeight += node.weight;
+                    while (protectedWeight > protectedMaximum && !protectedDeque.isEmpty()) {
+                        final Node<K> demoted = (Node<K>) protectedDeque.pollFirst();
+                        protectedWeight -= demoted.weight;
+                        demoted.queue = PROBATION;
+                        probation.addLast(demoted);
+                    }
+                    break;
+                default:
+                    protectedDeque.moveToBack(node);
+            }
+        }
+
+        @Override
+        public void onUpdate(final K key, final long weight) {
+            final Node<K> node = nodes.get(key);
+            if (node == null) {
+                return;
+            }
+            final long delta = weight - node.weight;
+            node.weight = weight;
+            if (node.queue == WINDOW) {
+                windowWeight += delta;
+            } else if (node.queue == PROTECTED) {
+                protectedWeight += delta;
+            }
+            onAccess(key);
+            drainWindow();
+        }
+
+        @Override
+        public void onRemove(final K key) {
+            final Node<K> node = nodes.remove(key);
+            if (node != null) {
+                unlink(node);
+            }
+        }
+
+        @Override
+        public boolean contains(final K key) {
+            return nodes.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return nodes.size();
+        }
+
+        @Override
+        public K evict() {
+            final Node<K> victim = (Node<K>) (probation.isEmpty() ?
+                    protectedDeque.isEmpty() ? window.peekFirst() : protectedDeque.peekFirst() :
+                    probation.peekFirst());
+            if (victim == null) {
+                return null;
+            }
+            final Node<K> candidate = (Node<K>) probation.pollLast();
+            Node<K> evicted = victim;
+            if (candidate != null && candidate != victim) {
+                evicted = sketch.frequency(candidate.key) > sketch.frequency(victim.key) ? victim : candidate;
+            }
+            if (candidate != null && candidate != evicted) {
+                probation.addLast(candidate);
+            }
+            if (evicted != candidate) {
+                unlink(evicted);
+            }
+            nodes.remove(evicted.key);
+            return evicted.key;
+        }
+
+        private void drainWindow() {
+            while (windowWeight > windowMaximum && !window.isEmpty()) {
+                // candidate for the main space, judged on the next eviction
+                final Node<K> candidate = (Node<K>) window.pollFirst();
+                windowWeight -= candidate.weight;
+                candidate.queue = PROBATION;
+                probation.addLast(candidate);
+            }
+        }
+
+        private void unlink(final Node<K> node) {
+            switch (node.queue) {
+                case WINDOW:
+                    window.remove(node);
+                    windowWeight -= node.weight;
+                    break;
+                case PROBATION:
+                    probation.remove(node);
+                    break;
+                default:
+                    protectedDeque.remove(node);
+                    protectedWeight -= node.weight;
+            }
+        }
+
+        private void ensureInitialized() {
+            if (sketch == null) {
+                init(DEFAULT_MAXIMUM);
+            }
+        }
+
+        private static final class Node<K> extends AccessOrderDeque.Node<K> {
+            private int queue = WINDOW;
+            private long weight;
+
+            private Node(final K key, final long weight) {
+                super(key);
+                this.weight = weight;
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.otaibe.commons.quarkus.cache.service;
+
+/**
+ * Count-Min sketch with 4 bit counters estimating how often a key was seen recently. Once the
+ * number of increments reaches ten times the table size all the counters are halved, so the
+ * history fades out. The table grows on demand without losing the counts, see
+ * {@link #ensureCapacity(long)}. Not thread safe.
+ */
+final class FrequencySketch {
+
+    private static final int MAX_COUNT = 15;
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int[] SEEDS = {0x97cb3127, 0xc2b2ae35, 0x85ebca6b, 0x27d4eb2f};
+
+    private final long[] table;
+    private final int counterMask;
+    private final int sampleSize;
+    private int size;
+
+    FrequencySketch(final long maximumSize) {
+        this(new long[tableLength(maximumSize)], 0);
+    }
+
+    private FrequencySketch(final long[] table, final int size) {
+        this.table = table;
+        // 16 counters per long
+        this.counterMask = (table.length << 4) - 1;
+        this.sampleSize = table.length * 10;
+        this.size = size;
+    }
+
+    /**
+     * The table length is a power of two and a counter index is the hash masked by the table size,
+     * so the counter a key hits in the larger table maps back to the one it hit in this table
+     * (same index with the high bits cleared). Copying the old table into every slice of the new one
+     * therefore keeps the estimate of every key.
+     *
+     * @return this sketch if it is large enough for the given number of keys, otherwise a larger one
+     * with the same frequencies
+     */
+    FrequencySketch ensureCapacity(final long maximumSize) {
+        final int length = tableLength(maximumSize);
+        if (length <= table.length) {
+            return this;
+        }
+        final long[] grown = new long[length];
+        for (int i = 0; i < length; i += table.length) {
+            System.arraycopy(table, 0, grown, i, table.length);
+        }
+        return new FrequencySketch(grown, size);
+    }
+
+    int frequency(final Object key) {
+        final int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < SEEDS.length; i++) {
+            frequency = Math.min(frequency, count(indexOf(hash, i)));
+        }
+        return frequency;
+    }
+
+    void increment(final Object key) {
+        final int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            added |= incrementAt(indexOf(hash, i));
+        }
+        if (added && ++size >= sampleSize) {
+            reset();
+        }
+    }
+
+    private int count(final int index) {
+        return (int) ((table[index >>> 4] >>> ((index & 15) << 2)) & MAX_COUNT);
+    }
+
+    private boolean incrementAt(final int index) {
+        final int word = index >>> 4;
+        final int shift = (index & 15) << 2;
+        if (((table[word] >>> shift) & MAX_COUNT) == MAX_COUNT) {
+            return false;
+        }
+        table[word] += 1L << shift;
+        return true;
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size >>>= 1;
+    }
+
+    private int indexOf(final int hash, final int i) {
+        int h = (hash + SEEDS[i]) * SEEDS[i];
+        h ^= h >>> 16;
+        return h & counterMask;
+    }
+
+    private static int spread(final int hashCode) {
+        int h = hashCode * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableLength(final long maximumSize) {
+        final long wanted = Math.max(16, Math.min(maximumSize, 1 << 26));
+        return Integer.highestOneBit((int) (wanted - 1)) << 1;
+    }
+}
@@ -0,0 +1,163 @@
+package org.otaibe.commons.quarkus.cache.service;
+
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Second tier of a {@link CacheService} keeping serialized values in direct buffers, outside the
+ * Java heap, so the GC pauses don't grow with it. The records are appended to slabs allocated on
+ * demand up to the maximum; once all of them are full the oldest slab is recycled and its records
+ * are dropped, so the tier evicts in write order. A removed or replaced record holds its space until
+ * its slab is recycled. Only the keys and the index stay on the heap.
+ * <p>
+ * The writes are serialized, the reads are lock free and validated against the generation of the
+ * slab, so a record overwritten while being read is a miss.
+ */
+final class OffHeapStore<K> {
+
+    static final int DEFAULT_SLAB_BYTES = 64 * 1024 * 1024;
+
+    private final Map<K, Location<K>> index = new ConcurrentHashMap<>();
+    private final Slab<K>[] slabs;
+    private final int slabBytes;
+    // guarded by this
+    private int current = -1;
+
+    OffHeapStore(final long maxBytes, final int slabBytes) {
+        if (maxBytes <= 0 || slabBytes <= Long.BYTES) {
+            throw new RuntimeException("invalid off heap size: maxBytes=" + maxBytes + ", slabBytes=" + slabBytes);
+        }
+        this.slabBytes = (int) Math.min(slabBytes, maxBytes);
+        final long numSlabs = (maxBytes + this.slabBytes - 1) / this.slabBytes;
+        if (numSlabs > Integer.MAX_VALUE) {
+            throw new RuntimeException("too many off heap slabs: " + numSlabs);
+        }
+        this.slabs = new Slab[(int) numSlabs];
+    }
+
+    /**
+     * @return false if the value doesn't fit in a slab
+     */
+    boolean put(final K key, final long writeNanos, final byte[] bytes) {
+        final int length = Long.BYTES + bytes.length;
+        if (bytes.length > slabBytes - Long.BYTES) {
+            return false;
+        }
+        synchronized (this) {
+            Slab<K> slab = current < 0 ? null : slabs[current];
+            if (slab == null || slab.position + length > slabBytes) {
+                slab = nextSlab();
+            }
+            final int offset = slab.position;
+            slab.buffer.putLong(offset, writeNanos);
+            slab.buffer.put(offset + Long.BYTES, bytes);
+            slab.position += length;
+            slab.keys.add(key);
+            index.put(key, new Location<>(slab, slab.generation, offset, length));
+        }
+        return true;
+    }
+
+    /**
+     * Removes the record of the key and returns it; null if there is none or if it was dropped while
+     * being read.
+     */
+    Record take(final K key) {
+        final Location<K> location = index.get(key);
+        if (location == null) {
+            return null;
+        }
+        final ByteBuffer buffer = location.slab.buffer;
+        final long writeNanos = buffer.getLong(location.offset);
+        final byte[] bytes = new byte[location.length - Long.BYTES];
+        buffer.get(location.offset + Long.BYTES, bytes);
+        // the reads above must not be reordered after the validation
+        VarHandle.acquireFence();
+        if (location.slab.generation != location.generation) {
+            index.remove(key, location);
+            return null;
+        }
+        return index.remove(key, location) ? new Record(writeNanos, bytes) : null;
+    }
+
+    void remove(final K key) {
+        index.remove(key);
+    }
+
+    int size() {
+        return index.size();
+    }
+
+    /**
+     * @return the size of the slabs allocated so far
+     */
+    synchronized long allocatedBytes() {
+        long allocated = 0;
+        for (final Slab<K> slab : slabs) {
+            if (slab != null) {
+                allocated += slab.buffer.capacity();
+            }
+        }
+        return allocated;
+    }
+
+    private Slab<K> nextSlab() {
+        current = (current + 1) % slabs.length;
+        Slab<K> slab = slabs[current];
+        if (slab == null) {
+            slab = new Slab<>(ByteBuffer.allocateDirect(slabBytes));
+            slabs[current] = slab;
+            return slab;
+        }
+        // invalidates the readers before the records are overwritten
+        slab.generation++;
+        VarHandle.storeStoreFence();
+        final Slab<K> recycled = slab;
+        for (final K key : recycled.keys) {
+            index.computeIfPresent(key, (k, location) -> location.slab == recycled ? null : location);
+        }
+        slab.keys.clear();
+        slab.position = 0;
+        return slab;
+    }
+
+    static final class Record {
+        final long writeNanos;
+        final byte[] bytes;
+
+        private Record(final long writeNanos, final byte[] bytes) {
+            this.writeNanos = writeNanos;
+            this.bytes = bytes;
+        }
+    }
+
+    private static final class Slab<K> {
+        private final ByteBuffer buffer;
+        // a key per record written, guarded by the store
+        private final List<K> keys = new ArrayList<>();
+        private volatile int generation;
+        private int position;
+
+        private Slab(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    private static final class Location<K> {
+        private final Slab<K> slab;
+        private final int generation;
+        private final int offset;
+        private final int length;
+
+        private Location(final Slab<K> slab, final int generation, final int offset, final int length) {
+            this.slab = slab;
+            this.generation = generation;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
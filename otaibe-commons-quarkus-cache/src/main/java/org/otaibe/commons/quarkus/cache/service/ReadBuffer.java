@@ -0,0 +1,80 @@
+package org.otaibe.commons.quarkus.cache.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Striped lossy ring buffers recording the read hits of a cache, so the readers don't contend on
+ * the eviction policy. Offering never blocks - when a stripe is full or contended the read is
+ * dropped, the policy only needs a sample of the accesses. Drained under the eviction lock.
+ */
+final class ReadBuffer<E> {
+
+    static final int BUFFER_SIZE = 16;
+    private static final int BUFFER_MASK = BUFFER_SIZE - 1;
+    private static final int MAX_STRIPES = 64;
+
+    private final Stripe<E>[] stripes;
+    private final int stripeMask;
+
+    ReadBuffer() {
+        final int wanted = Math.min(MAX_STRIPES, Runtime.getRuntime().availableProcessors() * 2);
+        final int length = Integer.highestOneBit(Math.max(1, wanted - 1)) << 1;
+        this.stripes = new Stripe[length];
+        for (int i = 0; i < length; i++) {
+            stripes[i] = new Stripe<>();
+        }
+        this.stripeMask = length - 1;
+    }
+
+    /**
+     * @return true if the stripe of the calling thread is full and the buffer should be drained
+     */
+    boolean offer(final E e) {
+        final Stripe<E> stripe = stripes[probe() & stripeMask];
+        final long head = stripe.readCounter;
+        final long tail = stripe.writeCounter.get();
+        final long size = tail - head;
+        if (size >= BUFFER_SIZE) {
+            return true;
+        }
+        if (stripe.writeCounter.compareAndSet(tail, tail + 1)) {
+            stripe.buffer.lazySet((int) (tail & BUFFER_MASK), e);
+            return size + 1 >= BUFFER_SIZE;
+        }
+        return false;
+    }
+
+    /** Must be called by a single thread at a time. */
+    void drainTo(final Consumer<E> consumer) {
+        for (final Stripe<E> stripe : stripes) {
+            long head = stripe.readCounter;
+            final long tail = stripe.writeCounter.get();
+            while (head < tail) {
+                final int index = (int) (head & BUFFER_MASK);
+                final E e = stripe.buffer.get(index);
+                if (e == null) {
+                    // the writer has not published it yet
+                    break;
+                }
+                stripe.buffer.lazySet(index, null);
+                consumer.accept(e);
+                head++;
+            }
+            stripe.readCounter = head;
+        }
+    }
+
+    private static int probe() {
+        final long id = Thread.currentThread().getId();
+        final int h = (int) (id ^ (id >>> 32)) * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Stripe<E> {
+        private final AtomicReferenceArray<E> buffer = new AtomicReferenceArray<>(BUFFER_SIZE);
+        private final AtomicLong writeCounter = new AtomicLong();
+        private volatile long readCounter;
+    }
+}
@@ -0,0 +1,88 @@
+package org.otaibe.commons.quarkus.cache.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Striped counters of a {@link CacheService} - recording doesn't contend between threads, reading
+ * them sums the stripes.
+ */
+final class StatsCounter {
+
+    private static final long[] LOAD_TIME_BOUNDS_NANOS = new long[CacheStats.LOAD_TIME_BOUNDS_MILLIS.length];
+
+    static {
+        for (int i = 0; i < LOAD_TIME_BOUNDS_NANOS.length; i++) {
+            LOAD_TIME_BOUNDS_NANOS[i] = TimeUnit.MILLISECONDS.toNanos(CacheStats.LOAD_TIME_BOUNDS_MILLIS[i]);
+        }
+    }
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder putCount = new LongAdder();
+    private final LongAdder removalCount = new LongAdder();
+    private final LongAdder sizeEvictionCount = new LongAdder();
+    private final LongAdder expirationCount = new LongAdder();
+    private final LongAdder loadSuccessCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+    private final LongAdder totalLoadNanos = new LongAdder();
+    private final LongAdder[] loadTimeCounts = new LongAdder[LOAD_TIME_BOUNDS_NANOS.length + 1];
+
+    StatsCounter() {
+        for (int i = 0; i < loadTimeCounts.length; i++) {
+            loadTimeCounts[i] = new LongAdder();
+        }
+    }
+
+    void recordHit() {
+        hitCount.increment();
+    }
+
+    void recordMiss() {
+        missCount.increment();
+    }
+
+    void recordPut() {
+        putCount.increment();
+    }
+
+    void recordRemoval() {
+        removalCount.increment();
+    }
+
+    void recordSizeEviction() {
+        sizeEvictionCount.increment();
+    }
+
+    void recordExpiration() {
+        expirationCount.increment();
+    }
+
+    void recordLoad(final boolean success, final long nanos) {
+        (success ? loadSuccessCount : loadFailureCount).increment();
+        totalLoadNanos.add(nanos);
+        int bucket = 0;
+        while (bucket < LOAD_TIME_BOUNDS_NANOS.length && nanos > LOAD_TIME_BOUNDS_NANOS[bucket]) {
+            bucket++;
+        }
+        loadTimeCounts[bucket].increment();
+    }
+
+    CacheStats.CacheStatsBuilder snapshot() {
+        final long[] loadTimes = new long[loadTimeCounts.length];
+        for (int i = 0; i < loadTimes.length; i++) {
+            loadTimes[i] = loadTimeCounts[i].sum();
+        }
+        return CacheStats.builder()
+                .hitCount(hitCount.sum())
+                .missCount(missCount.sum())
+                .putCount(putCount.sum())
+                .removalCount(removalCount.sum())
+                .sizeEvictionCount(sizeEvictionCount.sum())
+                .expirationCount(expirationCount.sum())
+                .loadSuccessCount(loadSuccessCount.sum())
+                .loadFailureCount(loadFailureCount.sum())
+                .totalLoadNanos(totalLoadNanos.sum())
+                .loadTimeCounts(loadTimes);
+    }
+}
@@ -0,0 +1,14 @@
+package org.otaibe.commons.quarkus.cache.service;
+
+/**
+ * Monotonic time source in nanoseconds, replaceable in tests.
+ */
+@FunctionalInterface
+public interface Ticker {
+
+    long read();
+
+    static Ticker system() {
+        return System::nanoTime;
+    }
+}
@@ -0,0 +1,140 @@
+package org.otaibe.commons.quarkus.cache.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel holding the entries of a cache by their expiration time. Each level is
+ * a ring of buckets (~1s, ~1m, ~1h, ~1d and ~2w wide); scheduling and descheduling are O(1) and
+ * advancing visits only the buckets whose time has passed, cascading the entries which are not due
+ * yet into a finer level. Not thread safe.
+ */
+final class TimerWheel<K, V> {
+
+    private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+    private static final long[] SPANS = {
+            1L << 30, // 1.07s
+            1L << 36, // 1.14m
+            1L << 42, // 1.22h
+            1L << 46, // 0.81d
+            1L << 50, // 13d
+            1L << 50
+    };
+    private static final long[] SHIFTS = {30, 36, 42, 46, 50};
+
+    private final CacheService.CacheTimeEntry<K, V>[][] wheel;
+    private final long base;
+    private final long expireAfterNanos;
+    // relative to the base
+    private long nanos;
+
+    TimerWheel(final long now, final long expireAfterNanos) {
+        this.base = now;
+        this.expireAfterNanos = expireAfterNanos;
+        this.wheel = new CacheService.CacheTimeEntry[BUCKETS.length][];
+        for (int i = 0; i < BUCKETS.length; i++) {
+            wheel[i] = new CacheService.CacheTimeEntry[BUCKETS[i]];
+            for (int j = 0; j < BUCKETS[i]; j++) {
+                final CacheService.CacheTimeEntry<K, V> sentinel = new CacheService.CacheTimeEntry<>(null, null, 0, 0);
+                sentinel.previousInTimer = sentinel;
+                sentinel.nextInTimer = sentinel;
+                wheel[i][j] = sentinel;
+            }
+        }
+    }
+
+    long getExpireAfterNanos() {
+        return expireAfterNanos;
+    }
+
+    boolean isExpired(final CacheService.CacheTimeEntry<K, V> entry, final long now) {
+        return now - entry.getWriteNanos() >= expireAfterNanos;
+    }
+
+    void schedule(final CacheService.CacheTimeEntry<K, V> entry) {
+        if (entry.nextInTimer == null) {
+            link(findBucket(Math.max(expirationOf(entry), nanos)), entry);
+        }
+    }
+
+    void deschedule(final CacheService.CacheTimeEntry<K, V> entry) {
+        if (entry.nextInTimer != null) {
+            unlink(entry);
+        }
+    }
+
+    /**
+     * Moves the time forward and passes every entry which is due to the consumer, already
+     * descheduled.
+     */
+    void advance(final long now, final Consumer<CacheService.CacheTimeEntry<K, V>> expired) {
+        final long previous = nanos;
+        nanos = now - base;
+        for (int i = 0; i < SHIFTS.length; i++) {
+            final long previousTicks = previous >>> SHIFTS[i];
+            final long currentTicks = nanos >>> SHIFTS[i];
+            if (currentTicks - previousTicks <= 0) {
+                break;
+            }
+            expire(i, previousTicks, currentTicks - previousTicks, expired);
+        }
+    }
+
+    private void expire(final int level,
+                        final long previousTicks,
+                        final long delta,
+                        final Consumer<CacheService.CacheTimeEntry<K, V>> expired) {
+        final CacheService.CacheTimeEntry<K, V>[] buckets = wheel[level];
+        final int mask = buckets.length - 1;
+        final int steps = (int) Math.min(1 + delta, buckets.length);
+        final int start = (int) (previousTicks & mask);
+        for (int i = start; i < start + steps; i++) {
+            final CacheService.CacheTimeEntry<K, V> sentinel = buckets[i & mask];
+            CacheService.CacheTimeEntry<K, V> entry = sentinel.nextInTimer;
+            sentinel.previousInTimer = sentinel;
+            sentinel.nextInTimer = sentinel;
+            while (entry != sentinel) {
+                final CacheService.CacheTimeEntry<K, V> next = entry.nextInTimer;
+                entry.previousInTimer = null;
+                entry.nextInTimer = null;
+                if (expirationOf(entry) - nanos > 0) {
+                    // not due yet, cascades into a finer bucket
+                    schedule(entry);
+                } else {
+                    expired.accept(entry);
+                }
+                entry = next;
+            }
+        }
+    }
+
+    private long expirationOf(final CacheService.CacheTimeEntry<K, V> entry) {
+        return entry.getWriteNanos() - base + expireAfterNanos;
+    }
+
+    private CacheService.CacheTimeEntry<K, V> findBucket(final long time) {
+        final long duration = time - nanos;
+        final int last = wheel.length - 1;
+        for (int i = 0; i < last; i++) {
+            if (duration < SPANS[i + 1]) {
+                final long ticks = time >>> SHIFTS[i];
+                return wheel[i][(int) (ticks & (wheel[i].length - 1))];
+            }
+        }
+        return wheel[last][0];
+    }
+
+    private static <K, V> void link(final CacheService.CacheTimeEntry<K, V> sentinel,
+                                    final CacheService.CacheTimeEntry<K, V> entry) {
+        entry.previousInTimer = sentinel.previousInTimer;
+        entry.nextInTimer = sentinel;
+        sentinel.previousInTimer.nextInTimer = entry;
+        sentinel.previousInTimer = entry;
+    }
+
+    private static <K, V> void unlink(final CacheService.CacheTimeEntry<K, V> entry) {
+        entry.previousInTimer.nextInTimer = entry.nextInTimer;
+        entry.nextInTimer.previousInTimer = entry.previousInTimer;
+        entry.previousInTimer = null;
+        entry.nextInTimer = null;
+    }
+}
@@ -0,0 +1,32 @@
+package org.otaibe.commons.quarkus.cache.service;
+
+import java.util.function.Function;
+
+/**
+ * Serializes the values kept in the off-heap tier of a {@link CacheService}, e.g. with the
+ * <code>JsonUtils</code> of the core module:
+ * <pre>
+ * ValueCodec.of(value -&gt; jsonUtils.writeValueAsBytes(value, DataFormat.SMILE),
+ *         bytes -&gt; jsonUtils.readValue(bytes, Foo.class).orElse(null))
+ * </pre>
+ */
+public interface ValueCodec<V> {
+
+    byte[] encode(V value);
+
+    V decode(byte[] bytes);
+
+    static <V> ValueCodec<V> of(final Function<V, byte[]> encoder, final Function<byte[], V> decoder) {
+        return new ValueCodec<V>() {
+            @Override
+            public byte[] encode(final V value) {
+                return encoder.apply(value);
+            }
+
+            @Override
+            public V decode(final byte[] bytes) {
+                return decoder.apply(bytes);
+            }
+        };
+    }
+}
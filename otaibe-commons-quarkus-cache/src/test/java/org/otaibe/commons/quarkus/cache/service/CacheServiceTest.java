@@ -0,0 +1,239 @@
+package org.otaibe.commons.quarkus.cache.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+class CacheServiceTest {
+
+    /** The sweep expires an entry once its bucket of the finest wheel level (2^30ns) has passed. */
+    private static final Duration SWEEP_DELAY = Duration.ofNanos(1L << 30);
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final FakeTicker ticker = new FakeTicker();
+    private final List<CacheService<String, String>> caches = new ArrayList<>();
+
+    @AfterEach
+    void stop() {
+        caches.forEach(CacheService::stop);
+    }
+
+    @Test
+    void expiresOnRead() {
+        final CacheService<String, String> cache = expiringCache(60);
+        cache.put("a", "1");
+
+        ticker.advance(Duration.ofSeconds(60).minusNanos(1));
+        Assertions.assertEquals("1", cache.get("a"));
+
+        ticker.advance(Duration.ofNanos(1));
+        // no sweep in between, the read itself expires the entry
+        Assertions.assertNull(cache.get("a"));
+        Assertions.assertEquals(1, cache.stats().getExpirationCount());
+        Assertions.assertEquals(0, cache.stats().getSize());
+    }
+
+    @Test
+    void sweepExpiresOnlyTheDueEntries() {
+        final CacheService<String, String> cache = expiringCache(60);
+        cache.put("a", "1");
+        ticker.advance(Duration.ofSeconds(30));
+        cache.put("b", "2");
+
+        ticker.advance(Duration.ofSeconds(30).plus(SWEEP_DELAY));
+        cache.cleanUp();
+        Assertions.assertEquals(1, cache.stats().getExpirationCount());
+        Assertions.assertEquals(1, cache.stats().getSize());
+
+        ticker.advance(Duration.ofSeconds(30).minus(SWEEP_DELAY).minusNanos(1));
+        cache.cleanUp();
+        Assertions.assertEquals(1, cache.stats().getExpirationCount());
+        Assertions.assertEquals("2", cache.get("b"));
+
+        ticker.advance(SWEEP_DELAY.plusNanos(1));
+        cache.cleanUp();
+        Assertions.assertEquals(2, cache.stats().getExpirationCount());
+        Assertions.assertEquals(0, cache.stats().getSize());
+    }
+
+    /**
+     * Durations on both sides of the spans of the wheel levels (2^30ns ~1s, 2^36ns ~1m and 2^42ns ~1h),
+     * the entry is swept in several steps so it cascades through the levels. It is never swept before it's
+     * due and at most {@link #SWEEP_DELAY} after.
+     */
+    @ParameterizedTest
+    @ValueSource(longs = {1, 2, 68, 69, 4_398, 4_399})
+    void sweepExpiresAtTheWheelLevelBoundaries(final long seconds) {
+        final CacheService<String, String> cache = expiringCache(seconds);
+        cache.put("a", "1");
+
+        final Duration duration = Duration.ofSeconds(seconds);
+        for (int i = 0; i < 4; i++) {
+            ticker.advance(duration.dividedBy(5));
+            cache.cleanUp();
+            Assertions.assertEquals(1, cache.stats().getSize());
+        }
+        ticker.advance(duration.minus(duration.dividedBy(5).multipliedBy(4)).minusNanos(1));
+        cache.cleanUp();
+        Assertions.assertEquals(1, cache.stats().getSize());
+
+        ticker.advance(SWEEP_DELAY.plusNanos(1));
+        cache.cleanUp();
+        Assertions.assertEquals(0, cache.stats().getSize());
+        Assertions.assertEquals(1, cache.stats().getExpirationCount());
+    }
+
+    @Test
+    void promotedEntryKeepsItsWriteTime() {
+        final CacheService<String, String> cache = register(CacheService.<String, String>builder()
+                .maxNumInCache(1)
+                .evictionPolicy(EvictionPolicy.lru())
+                .offHeapMaxBytes(1L << 20)
+                .valueCodec(ValueCodec.of(s -> s.getBytes(StandardCharsets.UTF_8),
+                        bytes -> new String(bytes, StandardCharsets.UTF_8)))
+                .duration(60L)
+                .durationFunction(Duration::ofSeconds)
+                .ticker(ticker)
+                .build());
+        cache.put("a", "1");
+        ticker.advance(Duration.ofSeconds(40));
+        cache.put("b", "2");
+        Assertions.assertEquals(1, cache.stats().getOffHeapSize());
+
+        // promoted back to the heap, b is demoted
+        Assertions.assertEquals("1", cache.get("a"));
+        Assertions.assertEquals(1, cache.stats().getOffHeapSize());
+
+        ticker.advance(Duration.ofSeconds(20));
+        Assertions.assertNull(cache.get("a"));
+        Assertions.assertEquals("2", cache.get("b"));
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        final CacheService<String, String> cache = register(CacheService.<String, String>builder().build());
+        final AtomicInteger loads = new AtomicInteger();
+        final Sinks.One<String> value = Sinks.one();
+        final Function<String, Mono<String>> loader = key -> {
+            loads.incrementAndGet();
+            return value.asMono();
+        };
+
+        final int callers = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return cache.getOrLoad("a", loader).block(TIMEOUT);
+                }));
+            }
+            start.countDown();
+            // every caller waits for the load, none of them has a value yet
+            while (cache.stats().getMissCount() < callers) {
+                Thread.sleep(1);
+            }
+            value.tryEmitValue("1");
+            for (final Future<String> result : results) {
+                Assertions.assertEquals("1", result.get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assertions.assertEquals(1, loads.get());
+        Assertions.assertEquals("1", cache.get("a"));
+    }
+
+    @Test
+    void failedOrEmptyLoadIsNotCached() {
+        final CacheService<String, String> cache = register(CacheService.<String, String>builder().build());
+        final AtomicInteger loads = new AtomicInteger();
+
+        final Mono<String> failed = cache.getOrLoad("a", key -> {
+            loads.incrementAndGet();
+            return Mono.error(new RuntimeException("load failed"));
+        });
+        Assertions.assertThrows(RuntimeException.class, () -> failed.block(TIMEOUT));
+
+        final Mono<String> empty = cache.getOrLoad("a", key -> {
+            loads.incrementAndGet();
+            return Mono.empty();
+        });
+        Assertions.assertNull(empty.block(TIMEOUT));
+
+        final Mono<String> loaded = cache.getOrLoad("a", key -> {
+            loads.incrementAndGet();
+            return Mono.just("1");
+        });
+        Assertions.assertEquals("1", loaded.block(TIMEOUT));
+        Assertions.assertEquals(3, loads.get());
+        Assertions.assertEquals(2, cache.stats().getLoadFailureCount());
+    }
+
+    @Test
+    void loadCompletesWhenAllTheWaitersCancel() {
+        final CacheService<String, String> cache = register(CacheService.<String, String>builder().build());
+        final AtomicInteger loads = new AtomicInteger();
+        final Sinks.One<String> value = Sinks.one();
+        final Function<String, Mono<String>> loader = key -> {
+            loads.incrementAndGet();
+            return value.asMono();
+        };
+
+        final Disposable first = cache.getOrLoad("a", loader).subscribe();
+        final Disposable second = cache.getOrLoad("a", loader).subscribe();
+        first.dispose();
+        second.dispose();
+        value.tryEmitValue("1");
+
+        Assertions.assertEquals("1", cache.get("a"));
+        Assertions.assertEquals("1", cache.getOrLoad("a", loader).block(TIMEOUT));
+        Assertions.assertEquals(1, loads.get());
+    }
+
+    private CacheService<String, String> expiringCache(final long seconds) {
+        return register(CacheService.<String, String>builder()
+                .duration(seconds)
+                .durationFunction(Duration::ofSeconds)
+                .ticker(ticker)
+                .build());
+    }
+
+    private CacheService<String, String> register(final CacheService<String, String> cache) {
+        caches.add(cache);
+        return cache.start();
+    }
+
+    /** Starts at an arbitrary time, so the entries are not aligned with the buckets of the wheel. */
+    static final class FakeTicker implements Ticker {
+        private volatile long nanos = 123_456_789_012L;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(final Duration duration) {
+            nanos += duration.toNanos();
+        }
+    }
+}
@@ -2,13 +2,13 @@ package org.otaibe.commons.quarkus.core.converter.json;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import lombok.Getter;
 import lombok.Setter;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormatter;
-import org.joda.time.format.ISODateTimeFormat;
 
 import java.io.IOException;
 
@@ -16,7 +16,7 @@ import java.io.IOException;
 @Setter
 public class DateTimeDeserializer extends StdDeserializer<DateTime> {
 
-    private DateTimeFormatter formatter = ISODateTimeFormat.dateTime().withZoneUTC();
+    private DateTimeFormatter formatter = IsoDateTimeCodec.ISO_DATE_TIME_UTC;
 
     public DateTimeDeserializer() {
         super(DateTime.class);
@@ -24,6 +24,12 @@ public class DateTimeDeserializer extends StdDeserializer<DateTime> {
 
     @Override
     public DateTime deserialize(JsonParser p, DeserializationContext ctxt) throws IOException, JsonProcessingException {
+        if (getFormatter() == IsoDateTimeCodec.ISO_DATE_TIME_UTC && p.hasToken(JsonToken.VALUE_STRING)) {
+            final DateTime result = IsoDateTimeCodec.parseDateTime(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+            if (result != null) {
+                return result;
+            }
+        }
         String text = p.getText();
         return getFormatter().parseDateTime(text);
     }
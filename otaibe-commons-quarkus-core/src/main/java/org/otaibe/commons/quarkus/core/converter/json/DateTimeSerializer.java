@@ -7,7 +7,6 @@ import lombok.Getter;
 import lombok.Setter;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormatter;
-import org.joda.time.format.ISODateTimeFormat;
 
 import java.io.IOException;
 
@@ -15,7 +14,7 @@ import java.io.IOException;
 @Setter
 public class DateTimeSerializer extends StdSerializer<DateTime> {
 
-    private DateTimeFormatter formatter = ISODateTimeFormat.dateTime().withZoneUTC();
+    private DateTimeFormatter formatter = IsoDateTimeCodec.ISO_DATE_TIME_UTC;
 
     public DateTimeSerializer() {
         super(DateTime.class);
@@ -23,6 +22,10 @@ public class DateTimeSerializer extends StdSerializer<DateTime> {
 
     @Override
     public void serialize(DateTime value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        if (getFormatter() == IsoDateTimeCodec.ISO_DATE_TIME_UTC) {
+            IsoDateTimeCodec.writeDateTime(value, gen);
+            return;
+        }
         gen.writeString(getFormatter().print(value));
     }
 }
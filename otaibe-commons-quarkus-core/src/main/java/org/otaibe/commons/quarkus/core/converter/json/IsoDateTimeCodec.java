@@ -0,0 +1,352 @@
+package org.otaibe.commons.quarkus.core.converter.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.chrono.ISOChronology;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+/**
+ * Hand written ISO-8601 writers and parsers for the date/time converters. The writers put the characters
+ * straight into the {@link JsonGenerator} and produce exactly the same text as <code>toString()</code> of
+ * the java.time values and {@link #ISO_DATE_TIME_UTC} for joda. The parsers read the parser's char buffer
+ * and handle only the common shapes - they return null for anything else, so the caller falls back to the
+ * regular (and stricter in reporting) parsing.
+ */
+public final class IsoDateTimeCodec {
+
+    public static final DateTimeFormatter ISO_DATE_TIME_UTC = ISODateTimeFormat.dateTime().withZoneUTC();
+
+    private static final int BUFFER_SIZE = 128;
+    // the longest local date time is +999999999-12-31T23:59:59.999999999
+    private static final int MAX_LOCAL_DATE_TIME_LENGTH = 35;
+    private static final int MAX_OFFSET_SECONDS = 18 * 3600;
+    private static final int MAX_JODA_OFFSET_SECONDS = 23 * 3600 + 59 * 60;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final int[] POWERS_OF_TEN = {
+            1, 10, 100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000, 100_000_000, 1_000_000_000};
+    // the values are copied to the generator right away, so one small buffer per thread is enough
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[BUFFER_SIZE]);
+
+    private IsoDateTimeCodec() {
+    }
+
+    public static void writeLocalDate(final LocalDate value, final JsonGenerator gen) throws IOException {
+        final char[] buf = BUFFER.get();
+        final int len = appendLocalDate(buf, 0, value.getYear(), value.getMonthValue(), value.getDayOfMonth());
+        gen.writeString(buf, 0, len);
+    }
+
+    public static void writeLocalDateTime(final LocalDateTime value, final JsonGenerator gen) throws IOException {
+        final char[] buf = BUFFER.get();
+        final int len = appendLocalDateTime(buf, 0, value);
+        gen.writeString(buf, 0, len);
+    }
+
+    public static void writeZonedDateTime(final ZonedDateTime value, final JsonGenerator gen) throws IOException {
+        final ZoneOffset offset = value.getOffset();
+        final ZoneId zone = value.getZone();
+        final String offsetId = offset.getId();
+        final String zoneId = zone == offset ? null : zone.getId();
+        final int zoneLength = offsetId.length() + (zoneId == null ? 0 : zoneId.length() + 2);
+        if (zoneLength > BUFFER_SIZE - MAX_LOCAL_DATE_TIME_LENGTH) {
+            gen.writeString(value.toString());
+            return;
+        }
+        final char[] buf = BUFFER.get();
+        int pos = appendLocalDateTime(buf, 0, value.toLocalDateTime());
+        pos = appendString(buf, pos, offsetId);
+        if (zoneId != null) {
+            buf[pos++] = '[';
+            pos = appendString(buf, pos, zoneId);
+            buf[pos++] = ']';
+        }
+        gen.writeString(buf, 0, pos);
+    }
+
+    /**
+     * Same output as {@link #ISO_DATE_TIME_UTC}, e.g. <code>2020-01-02T03:04:05.006Z</code>
+     */
+    public static void writeDateTime(final DateTime value, final JsonGenerator gen) throws IOException {
+        if (!(value.getChronology() instanceof ISOChronology)) {
+            gen.writeString(ISO_DATE_TIME_UTC.print(value));
+            return;
+        }
+        final long millis = value.getMillis();
+        final long epochDay = Math.floorDiv(millis, MILLIS_PER_DAY);
+        final int millisOfDay = (int) Math.floorMod(millis, MILLIS_PER_DAY);
+        final long date = civilFromDays(epochDay);
+        final char[] buf = BUFFER.get();
+        int pos = 0;
+        final int year = (int) (date >> 9);
+        if (year < 0) {
+            buf[pos++] = '-';
+        }
+        pos = appendNumber(buf, pos, Math.abs(year), 4);
+        buf[pos++] = '-';
+        pos = appendNumber(buf, pos, (int) (date >> 5) & 0xf, 2);
+        buf[pos++] = '-';
+        pos = appendNumber(buf, pos, (int) date & 0x1f, 2);
+        buf[pos++] = 'T';
+        pos = appendNumber(buf, pos, millisOfDay / 3_600_000, 2);
+        buf[pos++] = ':';
+        pos = appendNumber(buf, pos, millisOfDay / 60_000 % 60, 2);
+        buf[pos++] = ':';
+        pos = appendNumber(buf, pos, millisOfDay / 1000 % 60, 2);
+        buf[pos++] = '.';
+        pos = appendNumber(buf, pos, millisOfDay % 1000, 3);
+        buf[pos++] = 'Z';
+        gen.writeString(buf, 0, pos);
+    }
+
+    /**
+     * @return the date for <code>yyyy-MM-dd</code> or null
+     */
+    public static LocalDate parseLocalDate(final char[] buf, final int off, final int len) {
+        final int date = len == 10 ? parseDate(buf, off) : -1;
+        return date < 0 ? null : LocalDate.of(date >> 9, (date >> 5) & 0xf, date & 0x1f);
+    }
+
+    /**
+     * @return the date time for <code>yyyy-MM-ddTHH:mm[:ss[.S-SSSSSSSSS]]</code> or null
+     */
+    public static LocalDateTime parseLocalDateTime(final char[] buf, final int off, final int len) {
+        if (len < 16) {
+            return null;
+        }
+        final int date = parseDate(buf, off);
+        final int hour = parseNumber(buf, off + 11, 2);
+        final int minute = parseNumber(buf, off + 14, 2);
+        if (date < 0 || hour < 0 || hour > 23 || minute < 0 || minute > 59
+                || buf[off + 10] != 'T' || buf[off + 13] != ':') {
+            return null;
+        }
+        int second = 0;
+        int nano = 0;
+        if (len > 16) {
+            second = len >= 19 && buf[off + 16] == ':' ? parseNumber(buf, off + 17, 2) : -1;
+            if (second < 0 || second > 59) {
+                return null;
+            }
+            if (len > 19) {
+                final int digits = len - 20;
+                final int fraction = digits >= 1 && digits <= 9 ? parseNumber(buf, off + 20, digits) : -1;
+                if (buf[off + 19] != '.' || fraction < 0) {
+                    return null;
+                }
+                nano = fraction * POWERS_OF_TEN[9 - digits];
+            }
+        }
+        return LocalDateTime.of(date >> 9, (date >> 5) & 0xf, date & 0x1f, hour, minute, second, nano);
+    }
+
+    /**
+     * @return the date time for a local date time followed by <code>Z</code> or <code>&plusmn;HH:mm</code>
+     * (without a region id) or null
+     */
+    public static ZonedDateTime parseZonedDateTime(final char[] buf, final int off, final int len) {
+        if (len < 17) {
+            return null;
+        }
+        final int end = off + len;
+        if (buf[end - 1] == 'Z') {
+            final LocalDateTime dateTime = parseLocalDateTime(buf, off, len - 1);
+            return dateTime == null ? null : ZonedDateTime.of(dateTime, ZoneOffset.UTC);
+        }
+        final int offsetSeconds = parseOffsetSeconds(buf, end - 6, MAX_OFFSET_SECONDS);
+        if (offsetSeconds == Integer.MIN_VALUE) {
+            return null;
+        }
+        final LocalDateTime dateTime = parseLocalDateTime(buf, off, len - 6);
+        return dateTime == null ? null : ZonedDateTime.of(dateTime, ZoneOffset.ofTotalSeconds(offsetSeconds));
+    }
+
+    /**
+     * @return the date time for <code>yyyy-MM-ddTHH:mm:ss.SSS</code> followed by <code>Z</code> or
+     * <code>&plusmn;HH:mm</code>, in UTC like {@link #ISO_DATE_TIME_UTC} does, or null
+     */
+    public static DateTime parseDateTime(final char[] buf, final int off, final int len) {
+        final int offsetSeconds;
+        if (len == 24 && buf[off + 23] == 'Z') {
+            offsetSeconds = 0;
+        } else if (len == 29) {
+            offsetSeconds = parseOffsetSeconds(buf, off + 23, MAX_JODA_OFFSET_SECONDS);
+        } else {
+            return null;
+        }
+        final int date = parseDate(buf, off);
+        final int hour = parseNumber(buf, off + 11, 2);
+        final int minute = parseNumber(buf, off + 14, 2);
+        final int second = parseNumber(buf, off + 17, 2);
+        final int millis = parseNumber(buf, off + 20, 3);
+        if (offsetSeconds == Integer.MIN_VALUE || date < 0
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59 || millis < 0
+                || buf[off + 10] != 'T' || buf[off + 13] != ':' || buf[off + 16] != ':' || buf[off + 19] != '.') {
+            return null;
+        }
+        final long epochDay = daysFromCivil(date >> 9, (date >> 5) & 0xf, date & 0x1f);
+        return new DateTime(epochDay * MILLIS_PER_DAY
+                + hour * 3_600_000L
+                + minute * 60_000L
+                + second * 1000L
+                + millis
+                - offsetSeconds * 1000L, DateTimeZone.UTC);
+    }
+
+    private static int appendLocalDateTime(final char[] buf, final int start, final LocalDateTime value) {
+        int pos = appendLocalDate(buf, start, value.getYear(), value.getMonthValue(), value.getDayOfMonth());
+        buf[pos++] = 'T';
+        pos = appendNumber(buf, pos, value.getHour(), 2);
+        buf[pos++] = ':';
+        pos = appendNumber(buf, pos, value.getMinute(), 2);
+        final int second = value.getSecond();
+        final int nano = value.getNano();
+        if (second > 0 || nano > 0) {
+            buf[pos++] = ':';
+            pos = appendNumber(buf, pos, second, 2);
+            if (nano > 0) {
+                buf[pos++] = '.';
+                if (nano % 1_000_000 == 0) {
+                    pos = appendNumber(buf, pos, nano / 1_000_000, 3);
+                } else if (nano % 1000 == 0) {
+                    pos = appendNumber(buf, pos, nano / 1000, 6);
+                } else {
+                    pos = appendNumber(buf, pos, nano, 9);
+                }
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Same as {@link LocalDate#toString()} - at least 4 digits and '+' for the years after 9999
+     */
+    private static int appendLocalDate(final char[] buf, final int start, final int year, final int month, final int day) {
+        int pos = start;
+        if (year < 0) {
+            buf[pos++] = '-';
+        } else if (year > 9999) {
+            buf[pos++] = '+';
+        }
+        pos = appendNumber(buf, pos, Math.abs(year), 4);
+        buf[pos++] = '-';
+        pos = appendNumber(buf, pos, month, 2);
+        buf[pos++] = '-';
+        return appendNumber(buf, pos, day, 2);
+    }
+
+    /**
+     * Appends a non negative number padded with zeros to <code>minDigits</code>
+     */
+    private static int appendNumber(final char[] buf, final int start, final int value, final int minDigits) {
+        int digits = 1;
+        while (digits < POWERS_OF_TEN.length && value >= POWERS_OF_TEN[digits]) {
+            digits++;
+        }
+        final int length = Math.max(digits, minDigits);
+        int v = value;
+        for (int i = start + length - 1; i >= start; i--) {
+            buf[i] = (char) ('0' + v % 10);
+            v /= 10;
+        }
+        return start + length;
+    }
+
+    private static int appendString(final char[] buf, final int start, final String value) {
+        value.getChars(0, value.length(), buf, start);
+        return start + value.length();
+    }
+
+    /**
+     * @return year &lt;&lt; 9 | month &lt;&lt; 5 | day for a valid <code>yyyy-MM-dd</code> or -1
+     */
+    private static int parseDate(final char[] buf, final int off) {
+        final int year = parseNumber(buf, off, 4);
+        final int month = parseNumber(buf, off + 5, 2);
+        final int day = parseNumber(buf, off + 8, 2);
+        if (year < 0 || month < 0 || day < 0
+                || buf[off + 4] != '-' || buf[off + 7] != '-'
+                || !isValidDate(year, month, day)) {
+            return -1;
+        }
+        return year << 9 | month << 5 | day;
+    }
+
+    /**
+     * @return the value of <code>digits</code> decimal digits or -1 if there is a non digit
+     */
+    private static int parseNumber(final char[] buf, final int off, final int digits) {
+        int result = 0;
+        for (int i = off; i < off + digits; i++) {
+            final char c = buf[i];
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    /**
+     * @return the seconds of <code>&plusmn;HH:mm</code> or {@link Integer#MIN_VALUE} if it is not one
+     */
+    private static int parseOffsetSeconds(final char[] buf, final int off, final int maxSeconds) {
+        final char sign = buf[off];
+        final int hours = parseNumber(buf, off + 1, 2);
+        final int minutes = parseNumber(buf, off + 4, 2);
+        final int seconds = hours * 3600 + minutes * 60;
+        if ((sign != '+' && sign != '-') || buf[off + 3] != ':'
+                || hours < 0 || minutes < 0 || minutes > 59 || seconds > maxSeconds) {
+            return Integer.MIN_VALUE;
+        }
+        return sign == '-' ? -seconds : seconds;
+    }
+
+    private static boolean isValidDate(final int year, final int month, final int day) {
+        if (month < 1 || month > 12 || day < 1) {
+            return false;
+        }
+        if (month == 2) {
+            final boolean leap = (year % 4 == 0) && (year % 100 != 0 || year % 400 == 0);
+            return day <= (leap ? 29 : 28);
+        }
+        return day <= (month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31);
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic gregorian date (H. Hinnant's days_from_civil).
+     */
+    private static long daysFromCivil(final long year, final int month, final int day) {
+        final long y = month <= 2 ? year - 1 : year;
+        final long era = Math.floorDiv(y, 400);
+        final long yearOfEra = y - era * 400;
+        final long dayOfYear = (153L * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - 719_468;
+    }
+
+    /**
+     * Inverse of {@link #daysFromCivil(long, int, int)}
+     *
+     * @return year &lt;&lt; 9 | month &lt;&lt; 5 | day
+     */
+    private static long civilFromDays(final long epochDay) {
+        final long z = epochDay + 719_468;
+        final long era = Math.floorDiv(z, 146_097);
+        final long dayOfEra = z - era * 146_097;
+        final long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        final long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        final long mp = (5 * dayOfYear + 2) / 153;
+        final long day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        final long month = mp < 10 ? mp + 3 : mp - 9;
+        final long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year << 9 | month << 5 | day;
+    }
+}
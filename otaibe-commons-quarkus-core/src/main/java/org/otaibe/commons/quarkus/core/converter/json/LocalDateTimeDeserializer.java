@@ -2,6 +2,7 @@ package org.otaibe.commons.quarkus.core.converter.json;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 
@@ -15,6 +16,12 @@ public class LocalDateTimeDeserializer extends StdDeserializer<LocalDateTime> {
 
     @Override
     public LocalDateTime deserialize(JsonParser p, DeserializationContext ctxt) throws IOException, JsonProcessingException {
+        if (p.hasToken(JsonToken.VALUE_STRING)) {
+            final LocalDateTime result = IsoDateTimeCodec.parseLocalDateTime(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+            if (result != null) {
+                return result;
+            }
+        }
         String text = p.getText();
         return LocalDateTime.parse(text);
     }
@@ -2,11 +2,11 @@ package org.otaibe.commons.quarkus.core.converter.json;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import lombok.Getter;
 import lombok.Setter;
-import org.joda.time.DateTime;
 
 import java.io.IOException;
 import java.time.ZonedDateTime;
@@ -16,11 +16,17 @@ import java.time.ZonedDateTime;
 public class ZonedDateTimeDeserializer extends StdDeserializer<ZonedDateTime> {
 
     public ZonedDateTimeDeserializer() {
-        super(DateTime.class);
+        super(ZonedDateTime.class);
     }
 
     @Override
     public ZonedDateTime deserialize(JsonParser p, DeserializationContext ctxt) throws IOException, JsonProcessingException {
+        if (p.hasToken(JsonToken.VALUE_STRING)) {
+            final ZonedDateTime result = IsoDateTimeCodec.parseZonedDateTime(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+            if (result != null) {
+                return result;
+            }
+        }
         String text = p.getText();
         return ZonedDateTime.parse(text);
     }
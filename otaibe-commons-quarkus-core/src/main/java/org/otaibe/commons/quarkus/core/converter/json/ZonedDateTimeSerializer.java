@@ -19,6 +19,6 @@ public class ZonedDateTimeSerializer extends StdSerializer<ZonedDateTime> {
 
     @Override
     public void serialize(ZonedDateTime value, JsonGenerator gen, SerializerProvider provider) throws IOException {
-        gen.writeString(value.toString());
+        IsoDateTimeCodec.writeZonedDateTime(value, gen);
     }
 }
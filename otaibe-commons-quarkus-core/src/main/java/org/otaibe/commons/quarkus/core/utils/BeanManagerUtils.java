@@ -3,44 +3,163 @@ package org.otaibe.commons.quarkus.core.utils;
 import jakarta.enterprise.context.spi.CreationalContext;
 import jakarta.enterprise.inject.spi.Bean;
 import jakarta.enterprise.inject.spi.BeanManager;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import lombok.Getter;
 import lombok.Setter;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
 
+/**
+ * The resolved beans are cached by (type, name) and the references of the normal scoped beans (client
+ * proxies) are cached as well, so after the first call a lookup is a map hit. The caches are shared by all
+ * the instances - there is one bean manager per application. When the core extension is present it
+ * registers a build time index of the bean types and {@link #warmUp(BeanManager)} is called on startup.
+ */
 @Getter
 @Setter
+@Slf4j
 public class BeanManagerUtils {
 
+    // type name -> names of the bean classes which implement it, only types provided by class beans alone
+    private static final Map<String, List<String>> BEAN_INDEX = new ConcurrentHashMap<>();
+    private static final Map<BeanKey, Bean<?>> BEANS = new ConcurrentHashMap<>();
+    private static final Map<BeanKey, Object> REFERENCES = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, List<Class<?>>> IMPLEMENTATIONS = new ConcurrentHashMap<>();
+
+    /**
+     * Replaces the current index and drops the cached beans.
+     *
+     * @param index type name -> names of the bean classes which implement it
+     */
+    public static void registerIndex(final Map<String, List<String>> index) {
+        BEAN_INDEX.clear();
+        BEAN_INDEX.putAll(index);
+        clearCache();
+    }
+
+    /**
+     * Drops the index and the cached beans, e.g. on shutdown.
+     */
+    public static void clearIndex() {
+        BEAN_INDEX.clear();
+        clearCache();
+    }
+
+    public static void clearCache() {
+        BEANS.clear();
+        REFERENCES.clear();
+        IMPLEMENTATIONS.clear();
+    }
+
+    /**
+     * Resolves the beans of all the indexed types and creates the references of the normal scoped ones.
+     * Dependent beans are not instantiated.
+     */
+    public void warmUp(final BeanManager beanManager) {
+        BEAN_INDEX.keySet().forEach(typeName -> loadClass(typeName)
+                .ifPresent(type -> warmUp(beanManager, type)));
+    }
+
+    public void warmUp(final BeanManager beanManager, final Class<?>... types) {
+        for (final Class<?> type : types) {
+            try {
+                getImplementations(beanManager, type).forEach(aClass -> {
+                    final BeanKey key = new BeanKey(aClass, null);
+                    final Bean<?> bean = resolve(key, () -> beanManager.getBeans(aClass));
+                    if (bean != null && beanManager.isNormalScope(bean.getScope())) {
+                        REFERENCES.computeIfAbsent(key, k -> createReference(beanManager, bean, aClass));
+                    }
+                });
+            } catch (final Exception e) {
+                log.warn("unable to warm up beans of {}", type.getName(), e);
+            }
+        }
+    }
+
     public <T> List<T> getReferences(final BeanManager beanManager, final Class<T> clazz) {
-        final Set<Bean<?>> beans = beanManager.getBeans(clazz);
-        return beans.stream()
-                .map(bean1 -> bean1.getTypes()
-                        .stream()
-                        .filter(type -> !type.equals(clazz) && clazz.isAssignableFrom((Class<?>) type))
-                        .findFirst()
-                        .map(type -> (Class<?>) type)
-                        .orElse(null)
-                )
-                .filter(aClass -> aClass != null)
+        return getImplementations(beanManager, clazz).stream()
                 .map(aClass -> createBean(beanManager, aClass))
+                .filter(o -> o != null)
                 .map(o -> (T) o)
                 .collect(Collectors.toList());
     }
 
     public <T> T createBean(final BeanManager beanManager, final Class<T> clazz) {
-        final Set<Bean<?>> beans = beanManager.getBeans(clazz);
-        return createBean(beanManager, clazz, beans);
+        return getReference(beanManager, new BeanKey(clazz, null), () -> beanManager.getBeans(clazz));
     }
 
     public <T> T createBean(final BeanManager beanManager, final String name, final Class<T> clazz) {
-        final Set<Bean<?>> beans = beanManager.getBeans(name);
-        return createBean(beanManager, clazz, beans);
+        return getReference(beanManager, new BeanKey(clazz, name), () -> beanManager.getBeans(name));
     }
 
+    /**
+     * @return null if none of the <code>beans</code> has the type
+     */
     public <T> T createBean(final BeanManager beanManager, final Class<T> clazz, final Set<Bean<?>> beans) {
-        final Bean<?> bean = beans.stream()
+        final Bean<?> bean = findBean(clazz, beans);
+        return bean == null ? null : createReference(beanManager, bean, clazz);
+    }
+
+    protected <T> T getReference(final BeanManager beanManager,
+                                 final BeanKey key,
+                                 final Supplier<Set<Bean<?>>> beans) {
+        final Object cached = REFERENCES.get(key);
+        if (cached != null) {
+            return (T) cached;
+        }
+        final Bean<?> bean = resolve(key, beans);
+        if (bean == null) {
+            log.debug("no bean of type={}, name={}", key.getType().getName(), key.getName());
+            return null;
+        }
+        final T reference = createReference(beanManager, bean, (Class<T>) key.getType());
+        if (beanManager.isNormalScope(bean.getScope())) {
+            // a client proxy, safe to share
+            REFERENCES.putIfAbsent(key, reference);
+        }
+        return reference;
+    }
+
+    protected List<Class<?>> getImplementations(final BeanManager beanManager, final Class<?> clazz) {
+        return IMPLEMENTATIONS.computeIfAbsent(clazz, aClass -> {
+            final List<String> indexed = BEAN_INDEX.get(aClass.getName());
+            if (indexed != null) {
+                return indexed.stream()
+                        .map(this::loadClass)
+                        .flatMap(optional -> optional.stream())
+                        .collect(Collectors.toList());
+            }
+            return beanManager.getBeans(aClass).stream()
+                    .map(bean1 -> bean1.getTypes()
+                            .stream()
+                            .filter(type -> !type.equals(aClass)
+                                    && type instanceof Class
+                                    && aClass.isAssignableFrom((Class<?>) type))
+                            .findFirst()
+                            .map(type -> (Class<?>) type)
+                            .orElse(null)
+                    )
+                    .filter(type -> type != null)
+                    .collect(Collectors.toList());
+        });
+    }
+
+    /**
+     * @return null if there is no such bean, e.g. it has a qualifier or a restricted type set
+     */
+    private Bean<?> resolve(final BeanKey key, final Supplier<Set<Bean<?>>> beans) {
+        return BEANS.computeIfAbsent(key, k -> findBean(k.getType(), beans.get()));
+    }
+
+    private Bean<?> findBean(final Class<?> clazz, final Collection<Bean<?>> beans) {
+        return beans.stream()
                 .filter(bean1 -> bean1.getTypes()
                         .stream()
                         .filter(type -> type.equals(clazz))
@@ -48,7 +167,10 @@ public class BeanManagerUtils {
                         .isPresent()
                 )
                 .findFirst()
-                .get();
+                .orElse(null);
+    }
+
+    private <T> T createReference(final BeanManager beanManager, final Bean<?> bean, final Class<T> clazz) {
         final CreationalContext<?> creationalContext = beanManager.createCreationalContext(bean);
 
         return (T) beanManager.getReference(
@@ -56,4 +178,19 @@ public class BeanManagerUtils {
                 clazz,
                 creationalContext);
     }
+
+    private Optional<Class<?>> loadClass(final String className) {
+        try {
+            return Optional.of(Class.forName(className, false, Thread.currentThread().getContextClassLoader()));
+        } catch (final ClassNotFoundException e) {
+            log.warn("indexed bean type {} is not found", className);
+            return Optional.empty();
+        }
+    }
+
+    @Value
+    protected static class BeanKey {
+        Class<?> type;
+        String name;
+    }
 }
@@ -1,6 +1,7 @@
 package org.otaibe.commons.quarkus.core.utils;
 
 import java.io.*;
+import java.util.Optional;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -9,11 +10,22 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class BeanUtils {
 
+    private final CloneUtils cloneUtils = new CloneUtils();
+
+    /**
+     * Serializable graphs without custom serialization are copied field by field (transient fields
+     * are left empty, as with serialization), everything else goes through java serialization.
+     */
     public <T extends Serializable> T deepClone(final T input) {
         if (input == null) {
             return null;
         }
 
+        final Optional<T> clone = cloneUtils.deepClone(input, CloneUtils::isSerializationCompatible, true);
+        if (clone.isPresent()) {
+            return clone.get();
+        }
+
         try {
             try (final ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
                 try (final ObjectOutputStream objectOutputStream = new ObjectOutputStream(outputStream)) {
@@ -0,0 +1,455 @@
+package org.otaibe.commons.quarkus.core.utils;
+
+import java.io.Externalizable;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.MonthDay;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.Period;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Currency;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Field by field deep copy of object graphs. A copier (constructor + field {@link MethodHandle}s)
+ * is built once per class and cached. Immutable leaf values (strings, boxed primitives, java.time,
+ * joda-time, {@code ObjectId}, enums ...) are shared, the common JDK collections, arrays and {@link
+ * Date}s are copied, shared references and cycles are preserved.
+ *
+ * <p>Types which can't be copied this way (no no-arg constructor, JDK internals, classes rejected
+ * by the filter) make {@link #deepClone(Object, Predicate, boolean)} return empty, so the callers
+ * can fall back to their serialization based clone.
+ */
+@Slf4j
+public class CloneUtils {
+
+    private static final Set<Class<?>> IMMUTABLE_TYPES = Set.of(
+            String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class,
+            Long.class, Float.class, Double.class, BigInteger.class, BigDecimal.class, UUID.class,
+            URI.class, Locale.class, Currency.class, Class.class,
+            Instant.class, LocalDate.class, LocalDateTime.class, LocalTime.class, ZonedDateTime.class,
+            OffsetDateTime.class, OffsetTime.class, Duration.class, Period.class, Year.class,
+            YearMonth.class, MonthDay.class,
+            org.joda.time.DateTime.class, org.joda.time.LocalDate.class, org.joda.time.LocalDateTime.class,
+            org.joda.time.LocalTime.class, org.joda.time.Instant.class, org.joda.time.Duration.class,
+            org.joda.time.Period.class);
+
+    /** Immutable types from optional dependencies, matched by name. */
+    private static final Set<String> IMMUTABLE_TYPE_NAMES = Set.of("org.bson.types.ObjectId");
+
+    private static final Map<Class<?>, Function<Object, Collection<Object>>> COLLECTIONS = Map.of(
+            ArrayList.class, source -> new ArrayList<>(((Collection<?>) source).size()),
+            LinkedList.class, source -> new LinkedList<>(),
+            ArrayDeque.class, source -> new ArrayDeque<>(((Collection<?>) source).size()),
+            HashSet.class, source -> new HashSet<>(),
+            LinkedHashSet.class, source -> new LinkedHashSet<>(),
+            TreeSet.class, source -> new TreeSet<>(((TreeSet<Object>) source).comparator()));
+
+    private static final Map<Class<?>, Function<Object, Map<Object, Object>>> MAPS = Map.of(
+            HashMap.class, source -> new HashMap<>(),
+            LinkedHashMap.class, source -> new LinkedHashMap<>(),
+            TreeMap.class, source -> new TreeMap<>(((TreeMap<Object, Object>) source).comparator()),
+            ConcurrentHashMap.class, source -> new ConcurrentHashMap<>());
+
+    private static final String JACKSON_PACKAGE = "com.fasterxml.jackson.";
+
+    private static final ClassValue<Copier> COPIERS = new ClassValue<>() {
+        @Override
+        protected Copier computeValue(final Class<?> type) {
+            return createCopier(type);
+        }
+    };
+
+    private static final ClassValue<Boolean> SERIALIZATION_COMPATIBLE = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(final Class<?> type) {
+            return computeSerializationCompatible(type);
+        }
+    };
+
+    private static final ClassValue<Boolean> PLAIN_BEANS = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(final Class<?> type) {
+            return computePlainBean(type);
+        }
+    };
+
+    /** Copies all the instance fields of every object in the graph. */
+    public <T> Optional<T> deepClone(final T input) {
+        return deepClone(input, type -> true, false);
+    }
+
+    /**
+     * @param filter        every (non collection, non leaf) class in the graph must pass it, otherwise
+     *                      the result is empty
+     * @param skipTransient leave transient fields with their default value (as java serialization)
+     */
+    public <T> Optional<T> deepClone(final T input, final Predicate<Class<?>> filter, final boolean skipTransient) {
+        if (input == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of((T) new CloneContext(filter, skipTransient).copy(input));
+        } catch (final UnsupportedTypeException e) {
+            log.trace("unable to deep clone {}: {}", input.getClass(), e.getMessage());
+            return Optional.empty();
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static boolean isImmutable(final Class<?> type) {
+        return type.isPrimitive()
+                || IMMUTABLE_TYPES.contains(type)
+                || IMMUTABLE_TYPE_NAMES.contains(type.getName())
+                || ZoneId.class.isAssignableFrom(type)
+                || (org.joda.time.DateTimeZone.class.isAssignableFrom(type) && isJdkOrJodaClass(type))
+                || type.isEnum()
+                || (type.getSuperclass() != null && type.getSuperclass().isEnum());
+    }
+
+    /**
+     * True when copying the fields gives the same result as a java serialization round-trip: the
+     * whole hierarchy is {@link Serializable} and there is no custom serialization (readObject,
+     * writeReplace, readResolve, serialPersistentFields, {@link Externalizable}).
+     */
+    public static boolean isSerializationCompatible(final Class<?> type) {
+        return SERIALIZATION_COMPATIBLE.get(type);
+    }
+
+    /**
+     * True for a jackson-annotation free bean whose every field is a read/write bean property, so a
+     * json round-trip would carry exactly its fields.
+     */
+    public static boolean isPlainBean(final Class<?> type) {
+        return PLAIN_BEANS.get(type);
+    }
+
+    private static boolean isJdkOrJodaClass(final Class<?> type) {
+        return type.getName().startsWith("java.") || type.getName().startsWith("org.joda.time.");
+    }
+
+    private static Copier createCopier(final Class<?> type) {
+        if (Date.class.isAssignableFrom(type) && isJdkOrJodaClass(type)) {
+            return (source, context) -> {
+                final Object result = ((Date) source).clone();
+                context.copies.put(source, result);
+                return result;
+            };
+        }
+        final Function<Object, Collection<Object>> collectionFactory = COLLECTIONS.get(type);
+        if (collectionFactory != null) {
+            return (source, context) -> {
+                final Collection<Object> result = collectionFactory.apply(source);
+                context.copies.put(source, result);
+                for (final Object o : (Collection<?>) source) {
+                    result.add(context.copy(o));
+                }
+                return result;
+            };
+        }
+        final Function<Object, Map<Object, Object>> mapFactory = MAPS.get(type);
+        if (mapFactory != null) {
+            return (source, context) -> {
+                final Map<Object, Object> result = mapFactory.apply(source);
+                context.copies.put(source, result);
+                for (final Map.Entry<?, ?> entry : ((Map<?, ?>) source).entrySet()) {
+                    result.put(context.copy(entry.getKey()), context.copy(entry.getValue()));
+                }
+                return result;
+            };
+        }
+        try {
+            return new BeanCopier(type);
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            final String reason = type + " is not supported: " + e;
+            return (source, context) -> {
+                throw new UnsupportedTypeException(reason);
+            };
+        }
+    }
+
+    private static boolean computeSerializationCompatible(final Class<?> type) {
+        if (!Serializable.class.isAssignableFrom(type) || Externalizable.class.isAssignableFrom(type)) {
+            return false;
+        }
+        for (Class<?> current = type; current != Object.class; current = current.getSuperclass()) {
+            if (!Serializable.class.isAssignableFrom(current)
+                    || hasDeclaredMethod(current, "writeObject", ObjectOutputStream.class)
+                    || hasDeclaredMethod(current, "readObject", ObjectInputStream.class)
+                    || hasDeclaredMethod(current, "readObjectNoData")
+                    || hasDeclaredMethod(current, "writeReplace")
+                    || hasDeclaredMethod(current, "readResolve")) {
+                return false;
+            }
+            try {
+                current.getDeclaredField("serialPersistentFields");
+                return false;
+            } catch (final NoSuchFieldException e) {
+                // expected
+            }
+        }
+        return true;
+    }
+
+    private static boolean computePlainBean(final Class<?> type) {
+        try {
+            if (!Modifier.isPublic(type.getConstructor().getModifiers())) {
+                return false;
+            }
+        } catch (final NoSuchMethodException e) {
+            return false;
+        }
+        for (Class<?> current = type; current != Object.class; current = current.getSuperclass()) {
+            if (hasJacksonAnnotation(current)) {
+                return false;
+            }
+            for (final Method method : current.getDeclaredMethods()) {
+                if (hasJacksonAnnotation(method)) {
+                    return false;
+                }
+            }
+            for (final Field field : current.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                    continue;
+                }
+                if (Modifier.isTransient(field.getModifiers()) || hasJacksonAnnotation(field)) {
+                    return false;
+                }
+                final boolean publicField = Modifier.isPublic(field.getModifiers())
+                        && !Modifier.isFinal(field.getModifiers());
+                if (!publicField && !hasBeanAccessors(type, field)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasBeanAccessors(final Class<?> type, final Field field) {
+        final String name = StringUtils.capitalize(field.getName());
+        final boolean getter = hasPublicMethod(type, "get" + name)
+                || (field.getType() == boolean.class && hasPublicMethod(type, "is" + name));
+        return getter && hasPublicMethod(type, "set" + name, field.getType());
+    }
+
+    private static boolean hasPublicMethod(final Class<?> type, final String name, final Class<?>... parameterTypes) {
+        try {
+            type.getMethod(name, parameterTypes);
+            return true;
+        } catch (final NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static boolean hasDeclaredMethod(final Class<?> type, final String name, final Class<?>... parameterTypes) {
+        try {
+            type.getDeclaredMethod(name, parameterTypes);
+            return true;
+        } catch (final NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static boolean hasJacksonAnnotation(final AccessibleObject element) {
+        return hasJacksonAnnotation(element.getDeclaredAnnotations());
+    }
+
+    private static boolean hasJacksonAnnotation(final Class<?> type) {
+        return hasJacksonAnnotation(type.getDeclaredAnnotations());
+    }
+
+    private static boolean hasJacksonAnnotation(final Annotation[] annotations) {
+        for (final Annotation annotation : annotations) {
+            if (annotation.annotationType().getName().startsWith(JACKSON_PACKAGE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private interface Copier {
+        Object copy(Object source, CloneContext context) throws Throwable;
+    }
+
+    private static class CloneContext {
+        private final Predicate<Class<?>> filter;
+        private final boolean skipTransient;
+        private final IdentityHashMap<Object, Object> copies = new IdentityHashMap<>();
+
+        CloneContext(final Predicate<Class<?>> filter, final boolean skipTransient) {
+            this.filter = filter;
+            this.skipTransient = skipTransient;
+        }
+
+        Object copy(final Object source) throws Throwable {
+            if (source == null) {
+                return null;
+            }
+            final Class<?> type = source.getClass();
+            if (isImmutable(type)) {
+                return source;
+            }
+            final Object existing = copies.get(source);
+            if (existing != null) {
+                return existing;
+            }
+            if (type.isArray()) {
+                return copyArray(source, type);
+            }
+            return COPIERS.get(type).copy(source, this);
+        }
+
+        private Object copyArray(final Object source, final Class<?> type) throws Throwable {
+            final int length = Array.getLength(source);
+            final Class<?> componentType = type.getComponentType();
+            final Object result = Array.newInstance(componentType, length);
+            copies.put(source, result);
+            if (componentType.isPrimitive() || isImmutable(componentType)) {
+                System.arraycopy(source, 0, result, 0, length);
+                return result;
+            }
+            final Object[] sourceArray = (Object[]) source;
+            final Object[] resultArray = (Object[]) result;
+            for (int i = 0; i < length; i++) {
+                resultArray[i] = copy(sourceArray[i]);
+            }
+            return result;
+        }
+    }
+
+    /** Copies a bean through its no-arg constructor and the field handles of the whole hierarchy. */
+    private static class BeanCopier implements Copier {
+        private final Class<?> type;
+        private final MethodHandle constructor;
+        private final List<FieldCopier> fields = new ArrayList<>();
+
+        BeanCopier(final Class<?> type) throws ReflectiveOperationException {
+            if (type.isInterface() || Modifier.isAbstract(type.getModifiers()) || type.isRecord()
+                    || type.isHidden() || type.isSynthetic()) {
+                throw new InstantiationException("not an instantiable class");
+            }
+            this.type = type;
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            final Constructor<?> declaredConstructor = type.getDeclaredConstructor();
+            declaredConstructor.setAccessible(true);
+            constructor = lookup.unreflectConstructor(declaredConstructor)
+                    .asType(MethodType.methodType(Object.class));
+            for (Class<?> current = type; current != Object.class; current = current.getSuperclass()) {
+                for (final Field field : current.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        field.setAccessible(true);
+                        fields.add(new FieldCopier(lookup, field));
+                    }
+                }
+            }
+        }
+
+        @Override
+        public Object copy(final Object source, final CloneContext context) throws Throwable {
+            if (!context.filter.test(type)) {
+                throw new UnsupportedTypeException(type + " is rejected by the filter");
+            }
+            final Object result = (Object) constructor.invokeExact();
+            context.copies.put(source, result);
+            for (final FieldCopier field : fields) {
+                if (context.skipTransient && field.isTransient) {
+                    field.reset(result);
+                } else {
+                    field.copy(source, result, context);
+                }
+            }
+            return result;
+        }
+    }
+
+    private static class FieldCopier {
+        private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+        private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+        private final boolean isTransient;
+        /** (target, source) -> target.field = source.field, set for values which are shared as is. */
+        private final MethodHandle direct;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+        private final Object defaultValue;
+
+        FieldCopier(final MethodHandles.Lookup lookup, final Field field) throws IllegalAccessException {
+            isTransient = Modifier.isTransient(field.getModifiers());
+            final MethodHandle fieldGetter = lookup.unreflectGetter(field);
+            final MethodHandle fieldSetter = lookup.unreflectSetter(field);
+            final Class<?> fieldType = field.getType();
+            direct = fieldType.isPrimitive() || (Modifier.isFinal(fieldType.getModifiers()) && isImmutable(fieldType)) ?
+                    MethodHandles.filterArguments(fieldSetter, 1, fieldGetter).asType(SETTER_TYPE) : null;
+            getter = fieldGetter.asType(GETTER_TYPE);
+            setter = fieldSetter.asType(SETTER_TYPE);
+            defaultValue = fieldType.isPrimitive() ? Array.get(Array.newInstance(fieldType, 1), 0) : null;
+        }
+
+        void copy(final Object source, final Object target, final CloneContext context) throws Throwable {
+            if (direct != null) {
+                direct.invokeExact(target, source);
+                return;
+            }
+            final Object value = (Object) getter.invokeExact(source);
+            setter.invokeExact(target, context.copy(value));
+        }
+
+        void reset(final Object target) throws Throwable {
+            setter.invokeExact(target, defaultValue);
+        }
+    }
+
+    private static class UnsupportedTypeException extends RuntimeException {
+        UnsupportedTypeException(final String message) {
+            super(message, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package org.otaibe.commons.quarkus.core.utils;
+
+import java.time.Duration;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Maximum number of simultaneous operations for {@link ReactorBackpressureHandler}. The adaptive
+ * implementations change the limit at runtime from the latency and the errors of the completed
+ * operations.
+ */
+public interface ConcurrencyLimit {
+
+    int getLimit();
+
+    /**
+     * Called after each operation.
+     *
+     * @param rttNanos the duration of the operation
+     * @param inFlight the number of operations in flight when this one has been started (itself
+     *                 included)
+     * @param dropped  true when the operation failed
+     */
+    void onSample(long rttNanos, int inFlight, boolean dropped);
+
+    static ConcurrencyLimit fixed(final int limit) {
+        return new Fixed(limit);
+    }
+
+    static Aimd.AimdBuilder aimd() {
+        return Aimd.builder();
+    }
+
+    static Gradient.GradientBuilder gradient() {
+        return Gradient.builder();
+    }
+
+    @Getter
+    final class Fixed implements ConcurrencyLimit {
+        private final int limit;
+
+        public Fixed(final int limit) {
+            if (limit < 1) {
+                throw new IllegalArgumentException("limit must be positive: " + limit);
+            }
+            this.limit = limit;
+        }
+
+        @Override
+        public void onSample(final long rttNanos, final int inFlight, final boolean dropped) {
+        }
+
+        @Override
+        public String toString() {
+            return "Fixed{limit=" + limit + "}";
+        }
+    }
+
+    /**
+     * Additive increase / multiplicative decrease: +1 after each successful operation which used at
+     * least half of the limit, and multiplied by the backoff ratio after a failed one or one which took
+     * longer than the timeout.
+     */
+    @Getter
+    final class Aimd implements ConcurrencyLimit {
+        private final int minLimit;
+        private final int maxLimit;
+        private final double backoffRatio;
+        private final long timeoutNanos;
+        private volatile int limit;
+
+        @Builder
+        private Aimd(final Integer initialLimit,
+                     final Integer minLimit,
+                     final Integer maxLimit,
+                     final Double backoffRatio,
+                     final Duration timeout) {
+            this.minLimit = minLimit == null ? 1 : minLimit;
+            this.maxLimit = maxLimit == null ? 200 : maxLimit;
+            this.backoffRatio = backoffRatio == null ? 0.9 : backoffRatio;
+            this.timeoutNanos = (timeout == null ? Duration.ofSeconds(5) : timeout).toNanos();
+            this.limit = clamp(initialLimit == null ? 10 : initialLimit, this.minLimit, this.maxLimit);
+            if (this.backoffRatio <= 0 || this.backoffRatio >= 1) {
+                throw new IllegalArgumentException("backoffRatio must be in (0, 1): " + this.backoffRatio);
+            }
+        }
+
+        @Override
+        public synchronized void onSample(final long rttNanos, final int inFlight, final boolean dropped) {
+            final int current = limit;
+            if (dropped || rttNanos > timeoutNanos) {
+                limit = clamp((int) (current * backoffRatio), minLimit, maxLimit);
+            } else if (inFlight * 2 >= current) {
+                limit = clamp(current + 1, minLimit, maxLimit);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Aimd{limit=" + limit + "}";
+        }
+    }
+
+    /**
+     * Gradient (Vegas like) control - compares the latest latency with the long term average. While they
+     * are close the limit grows by a queue allowance of sqrt(limit), when the latency rises the limit is
+     * reduced proportionally (at most by half for a single sample).
+     */
+    @Getter
+    final class Gradient implements ConcurrencyLimit {
+        private final int minLimit;
+        private final int maxLimit;
+        private final double smoothing;
+        private final double rttTolerance;
+        private final int longWindow;
+        @Getter(AccessLevel.NONE)
+        private double estimatedLimit;
+        @Getter(AccessLevel.NONE)
+        private double longRttNanos;
+        private volatile int limit;
+
+        @Builder
+        private Gradient(final Integer initialLimit,
+                         final Integer minLimit,
+                         final Integer maxLimit,
+                         final Double smoothing,
+                         final Double rttTolerance,
+                         final Integer longWindow) {
+            this.minLimit = minLimit == null ? 1 : minLimit;
+            this.maxLimit = maxLimit == null ? 200 : maxLimit;
+            this.smoothing = smoothing == null ? 0.2 : smoothing;
+            this.rttTolerance = rttTolerance == null ? 1.5 : rttTolerance;
+            this.longWindow = longWindow == null ? 600 : longWindow;
+            this.limit = clamp(initialLimit == null ? 10 : initialLimit, this.minLimit, this.maxLimit);
+            this.estimatedLimit = this.limit;
+        }
+
+        @Override
+        public synchronized void onSample(final long rttNanos, final int inFlight, final boolean dropped) {
+            if (rttNanos <= 0 && !dropped) {
+                return;
+            }
+            // a failure says nothing about the normal latency
+            if (!dropped) {
+                longRttNanos = longRttNanos == 0
+                        ? rttNanos
+                        : longRttNanos + (rttNanos - longRttNanos) / longWindow;
+            }
+            // do not grow while the limit is not used
+            if (!dropped && inFlight * 2 < estimatedLimit) {
+                return;
+            }
+            final double gradient = dropped
+                    ? 0.5
+                    : Math.max(0.5, Math.min(1.0, rttTolerance * longRttNanos / rttNanos));
+            final double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+            estimatedLimit = Math.max(minLimit, Math.min(maxLimit,
+                    estimatedLimit * (1 - smoothing) + newLimit * smoothing));
+            limit = (int) estimatedLimit;
+        }
+
+        @Override
+        public String toString() {
+            return "Gradient{limit=" + limit + "}";
+        }
+    }
+
+    private static int clamp(final int value, final int min, final int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
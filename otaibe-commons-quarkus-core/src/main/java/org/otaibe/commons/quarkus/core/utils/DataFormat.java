@@ -0,0 +1,94 @@
+package org.otaibe.commons.quarkus.core.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import java.util.Optional;
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Encodings supported by {@link JsonUtils}. Text json stays the default, Smile and CBOR are the
+ * binary json variants which are smaller and cheaper to generate/parse for large payloads.
+ */
+@Getter
+public enum DataFormat {
+    JSON("application/json", JsonFactory.FORMAT_NAME_JSON),
+    SMILE("application/x-jackson-smile", SmileFactory.FORMAT_NAME_SMILE),
+    CBOR("application/cbor", CBORFactory.FORMAT_NAME);
+
+    /** Number of leading bytes needed by {@link #detect(byte[], int, int)}. */
+    public static final int HEADER_LENGTH = 3;
+
+    private final String mediaType;
+    private final String formatName;
+
+    DataFormat(final String mediaType, final String formatName) {
+        this.mediaType = mediaType;
+        this.formatName = formatName;
+    }
+
+    /**
+     * Detects the encoding from the leading bytes. Smile documents start with the ":)\n" header,
+     * CBOR maps/arrays/tags have the high bit set in the first byte while text json starts with
+     * an ascii char or with an unicode BOM (0xEF for UTF-8, 0xFE/0xFF for UTF-16/32).
+     */
+    public static DataFormat detect(final byte[] bytes, final int offset, final int length) {
+        if (bytes == null || length <= 0) {
+            return JSON;
+        }
+        if (length >= HEADER_LENGTH
+                && bytes[offset] == ':'
+                && bytes[offset + 1] == ')'
+                && bytes[offset + 2] == '\n') {
+            return SMILE;
+        }
+        final int first = bytes[offset] & 0xFF;
+        if (first >= 0x80 && first != 0xEF && first != 0xFE && first != 0xFF) {
+            return CBOR;
+        }
+        return JSON;
+    }
+
+    /**
+     * @return the first media type of an http Accept header which is one of the formats, the q values
+     * are ignored
+     */
+    public static Optional<DataFormat> fromAccept(final String accept) {
+        if (accept == null) {
+            return Optional.empty();
+        }
+        for (final String part : accept.split(",")) {
+            final String mediaType = StringUtils.substringBefore(part, ";").trim();
+            for (final DataFormat format : values()) {
+                if (format.getMediaType().equalsIgnoreCase(mediaType)) {
+                    return Optional.of(format);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    public static Optional<DataFormat> of(final JsonFactory factory) {
+        for (final DataFormat format : values()) {
+            if (format.getFormatName().equals(factory.getFormatName())) {
+                return Optional.of(format);
+            }
+        }
+        return Optional.empty();
+    }
+
+    JsonFactory createFactory() {
+        switch (this) {
+            case SMILE:
+                return new SmileFactory();
+            case CBOR:
+                return CBORFactory.builder()
+                        .enable(CBORGenerator.Feature.WRITE_TYPE_HEADER)
+                        .build();
+            default:
+                return new JsonFactory();
+        }
+    }
+}
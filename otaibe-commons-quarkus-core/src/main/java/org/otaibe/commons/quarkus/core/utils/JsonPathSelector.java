@@ -0,0 +1,159 @@
+package org.otaibe.commons.quarkus.core.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pre-compiled set of paths for {@link JsonUtils#readPaths(byte[], JsonPathSelector)}. A path is
+ * either a JSON Pointer (<code>/application/instance/&#42;/status</code>) or a dotted expression
+ * (<code>application.instance[*].status</code>); <code>*</code> matches any field or any array
+ * element. The paths are merged into a tree, so the parser is walked once whatever their count.
+ * Create it once and reuse it.
+ */
+public final class JsonPathSelector {
+
+    public static final String WILDCARD = "*";
+
+    private final List<String> paths;
+    private final Node root = new Node();
+
+    JsonPathSelector(final Collection<String> paths) {
+        this.paths = Collections.unmodifiableList(new ArrayList<>(paths));
+        for (final String path : this.paths) {
+            Node node = root;
+            for (final String segment : parse(path)) {
+                node = node.add(segment);
+            }
+            node.terminal = true;
+        }
+        root.resolveWildcards();
+    }
+
+    public static JsonPathSelector compile(final String... paths) {
+        return compile(Arrays.asList(paths));
+    }
+
+    public static JsonPathSelector compile(final Collection<String> paths) {
+        return new JsonPathSelector(paths);
+    }
+
+    public List<String> getPaths() {
+        return paths;
+    }
+
+    Node getRoot() {
+        return root;
+    }
+
+    /**
+     * Splits a path into segments. An empty path or <code>$</code> selects the whole document.
+     */
+    static List<String> parse(final String path) {
+        final List<String> result = new ArrayList<>();
+        if (path == null || path.isEmpty()) {
+            return result;
+        }
+        if (path.charAt(0) == '/') {
+            for (final String segment : path.substring(1).split("/", -1)) {
+                result.add(segment.replace("~1", "/").replace("~0", "~"));
+            }
+            return result;
+        }
+        String dotted = path;
+        if (dotted.startsWith("$")) {
+            dotted = dotted.substring(dotted.startsWith("$.") ? 2 : 1);
+        }
+        final StringBuilder segment = new StringBuilder();
+        for (int i = 0; i < dotted.length(); i++) {
+            final char c = dotted.charAt(i);
+            if (c == '.' || c == '[') {
+                if (segment.length() > 0) {
+                    result.add(segment.toString());
+                    segment.setLength(0);
+                }
+                if (c == '[') {
+                    final int end = dotted.indexOf(']', i);
+                    if (end < 0) {
+                        throw new IllegalArgumentException("unclosed [ in path: " + path);
+                    }
+                    result.add(dotted.substring(i + 1, end));
+                    i = end;
+                }
+            } else {
+                segment.append(c);
+            }
+        }
+        if (segment.length() > 0) {
+            result.add(segment.toString());
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "JsonPathSelector" + paths;
+    }
+
+    static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private Node any;
+        private boolean terminal;
+
+        /** The whole value at this node is selected. */
+        boolean isTerminal() {
+            return terminal;
+        }
+
+        /** @return the node for a field, null if nothing below the field is selected */
+        Node child(final String name) {
+            final Node child = children.isEmpty() ? null : children.get(name);
+            return child != null ? child : any;
+        }
+
+        /** @return the node for an array element, null if nothing below the element is selected */
+        Node element(final int index) {
+            return children.isEmpty() ? any : child(Integer.toString(index));
+        }
+
+        private Node add(final String segment) {
+            if (WILDCARD.equals(segment)) {
+                if (any == null) {
+                    any = new Node();
+                }
+                return any;
+            }
+            return children.computeIfAbsent(segment, s -> new Node());
+        }
+
+        /**
+         * Copies the wildcard branch under every named sibling, so a lookup needs to follow only one
+         * node: <code>a.*.x</code> and <code>a.b.y</code> give <code>b</code> both <code>x</code> and
+         * <code>y</code>.
+         */
+        private void resolveWildcards() {
+            if (any != null) {
+                children.values().forEach(child -> child.merge(any));
+                any.resolveWildcards();
+            }
+            children.values().forEach(Node::resolveWildcards);
+        }
+
+        private void merge(final Node source) {
+            terminal |= source.terminal;
+            source.children.forEach((name, child) -> children
+                    .computeIfAbsent(name, s -> new Node())
+                    .merge(child));
+            if (source.any != null) {
+                if (any == null) {
+                    any = new Node();
+                }
+                any.merge(source.any);
+            }
+        }
+    }
+}
@@ -1,19 +1,57 @@
 package org.otaibe.commons.quarkus.core.utils;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import com.fasterxml.jackson.core.async.NonBlockingInputFeeder;
+import com.fasterxml.jackson.core.io.JsonEOFException;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.deser.DefaultDeserializationContext;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.Setter;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.otaibe.commons.quarkus.core.beans.CustomObjectMapperConfig;
+import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.util.function.Tuples;
 
 /** Created by triphon on 13.08.19. */
 @Getter
@@ -21,9 +59,48 @@ import org.slf4j.LoggerFactory;
 public class JsonUtils {
   private static final Logger logger = LoggerFactory.getLogger(JsonUtils.class);
 
+  /** Upper bound of the cached readers/writers, protects against per call created mappers. */
+  public static final int MAX_CACHED_READERS_WRITERS = 4096;
+
+  /** Marks a value with nothing selected in it, null is a legitimate selected value. */
+  private static final Object NOT_SELECTED = new Object();
+
+  /** Reference for the out of the box configuration, see {@link #isDefaultConfig(ObjectMapper)}. */
+  private static final ObjectMapper DEFAULT_CONFIG_MAPPER = new ObjectMapper();
+
   private final ObjectMapper objectMapper;
   private final CustomObjectMapperConfig customObjectMapperConfig;
 
+  @Getter(AccessLevel.NONE)
+  private final Map<ObjectMapper, MapperCache> mapperCaches = new ConcurrentHashMap<>();
+  @Getter(AccessLevel.NONE)
+  private final AtomicInteger numCachedReaders = new AtomicInteger();
+  @Getter(AccessLevel.NONE)
+  private final AtomicInteger numCachedWriters = new AtomicInteger();
+  @Getter(AccessLevel.NONE)
+  private final Map<FormatKey, ObjectMapper> formatMappers = new ConcurrentHashMap<>();
+  @Getter(AccessLevel.NONE)
+  private final Map<ObjectMapper, ObjectMapper> baseMappers = new ConcurrentHashMap<>();
+  @Getter(AccessLevel.NONE)
+  private final Map<ObjectMapper, Boolean> defaultConfigMappers = new ConcurrentHashMap<>();
+  @Getter(AccessLevel.NONE)
+  private final CloneUtils cloneUtils = new CloneUtils();
+
+  /**
+   * Lets {@link #deepClone(Object, ObjectMapper, Class)} copy plain beans field by field even when
+   * the mapper has modules or custom configuration, which the field copy ignores.
+   */
+  @Setter
+  private volatile boolean fieldCopyClone;
+  @Getter(AccessLevel.NONE)
+  private final LongAdder readerHits = new LongAdder();
+  @Getter(AccessLevel.NONE)
+  private final LongAdder readerMisses = new LongAdder();
+  @Getter(AccessLevel.NONE)
+  private final LongAdder writerHits = new LongAdder();
+  @Getter(AccessLevel.NONE)
+  private final LongAdder writerMisses = new LongAdder();
+
     public JsonUtils(final ObjectMapper objectMapper, final CustomObjectMapperConfig customObjectMapperConfig) {
         this.objectMapper = objectMapper;
         this.customObjectMapperConfig = customObjectMapperConfig;
@@ -35,6 +112,162 @@ public class JsonUtils {
     // getCustomObjectMapperConfig().fillObjectMapper(getObjectMapper());
   }
 
+  /**
+   * Returns a cached {@link ObjectReader} bound to the type. The reader captures the configuration
+   * of the mapper at creation time, so mappers should be fully configured before they are used
+   * (or {@link #clearReadersAndWriters()} should be called after reconfiguring them).
+   */
+  public ObjectReader getReader(final ObjectMapper objectMapper, final Class<?> type) {
+    return getReader(objectMapper, type, null);
+  }
+
+  /**
+   * Once {@link #MAX_CACHED_READERS_WRITERS} readers are cached the new ones are created per call,
+   * without being counted as misses.
+   */
+  public ObjectReader getReader(
+      final ObjectMapper objectMapper, final Class<?> type, final Class<?> view) {
+    final MapperCache mapperCache = mapperCaches.get(objectMapper);
+    final Map<Class<?>, ObjectReader> readers =
+        mapperCache == null ? null : mapperCache.findReaders(view);
+    final ObjectReader reader = readers == null ? null : readers.get(type);
+    if (reader != null) {
+      readerHits.increment();
+      return reader;
+    }
+    final ObjectReader reader1 = objectMapper.readerFor(type);
+    final ObjectReader result = view == null ? reader1 : reader1.withView(view);
+    if (numCachedReaders.get() >= MAX_CACHED_READERS_WRITERS) {
+      return result;
+    }
+    readerMisses.increment();
+    final ObjectReader previous =
+        mapperCaches
+            .computeIfAbsent(objectMapper, mapper -> new MapperCache())
+            .getReaders(view)
+            .putIfAbsent(type, result);
+    if (previous != null) {
+      return previous;
+    }
+    numCachedReaders.incrementAndGet();
+    return result;
+  }
+
+  /**
+   * Returns a cached {@link ObjectWriter} bound to the type, see {@link #getReader(ObjectMapper,
+   * Class)} for the configuration caveat.
+   */
+  public ObjectWriter getWriter(final ObjectMapper objectMapper, final Class<?> type) {
+    return getWriter(objectMapper, type, null);
+  }
+
+  public ObjectWriter getWriter(
+      final ObjectMapper objectMapper, final Class<?> type, final Class<?> view) {
+    final MapperCache mapperCache = mapperCaches.get(objectMapper);
+    final Map<Class<?>, ObjectWriter> writers =
+        mapperCache == null ? null : mapperCache.findWriters(view);
+    final ObjectWriter writer = writers == null ? null : writers.get(type);
+    if (writer != null) {
+      writerHits.increment();
+      return writer;
+    }
+    final ObjectWriter writer1 = objectMapper.writerFor(type);
+    final ObjectWriter result = view == null ? writer1 : writer1.withView(view);
+    if (numCachedWriters.get() >= MAX_CACHED_READERS_WRITERS) {
+      return result;
+    }
+    writerMisses.increment();
+    final ObjectWriter previous =
+        mapperCaches
+            .computeIfAbsent(objectMapper, mapper -> new MapperCache())
+            .getWriters(view)
+            .putIfAbsent(type, result);
+    if (previous != null) {
+      return previous;
+    }
+    numCachedWriters.incrementAndGet();
+    return result;
+  }
+
+  public long getReaderCacheHits() {
+    return readerHits.sum();
+  }
+
+  public long getReaderCacheMisses() {
+    return readerMisses.sum();
+  }
+
+  public long getWriterCacheHits() {
+    return writerHits.sum();
+  }
+
+  public long getWriterCacheMisses() {
+    return writerMisses.sum();
+  }
+
+  public void clearReadersAndWriters() {
+    mapperCaches.clear();
+    numCachedReaders.set(0);
+    numCachedWriters.set(0);
+    defaultConfigMappers.clear();
+  }
+
+  ObjectWriter getWriterFor(final ObjectMapper objectMapper, final Object input) {
+    return input == null ? objectMapper.writer() : getWriter(objectMapper, input.getClass());
+  }
+
+  public ObjectMapper getObjectMapper(final DataFormat format) {
+    return getMapper(getObjectMapper(), format);
+  }
+
+  /**
+   * Returns a copy of the mapper (same modules and configuration) that encodes the requested
+   * format. The copies are cached, so the returned mapper can be kept as a per profile mapper and
+   * passed to any of the methods accepting an {@link ObjectMapper}.
+   */
+  public ObjectMapper getMapper(final ObjectMapper objectMapper, final DataFormat format) {
+    final ObjectMapper base = baseMappers.getOrDefault(objectMapper, objectMapper);
+    if (DataFormat.of(base.getFactory()).filter(format::equals).isPresent()) {
+      return base;
+    }
+    return formatMappers.computeIfAbsent(
+        new FormatKey(base, format),
+        key -> {
+          final ObjectMapper mapper = base.copyWith(format.createFactory());
+          baseMappers.put(mapper, base);
+          return mapper;
+        });
+  }
+
+  /**
+   * Picks the mapper matching the encoding of the data, so text json, Smile and CBOR payloads can
+   * all be read with the same mapper. Mappers for other formats (e.g. yaml) are returned as is.
+   */
+  ObjectMapper detectMapper(
+      final byte[] bytes, final int offset, final int length, final ObjectMapper objectMapper) {
+    if (!DataFormat.of(objectMapper.getFactory()).isPresent()) {
+      return objectMapper;
+    }
+    return getMapper(objectMapper, DataFormat.detect(bytes, offset, length));
+  }
+
+  /** Same as {@link #detectMapper(byte[], int, int, ObjectMapper)}, the stream must support mark. */
+  ObjectMapper detectMapper(final InputStream value, final ObjectMapper objectMapper)
+      throws IOException {
+    if (!DataFormat.of(objectMapper.getFactory()).isPresent()) {
+      return objectMapper;
+    }
+    final byte[] header = new byte[DataFormat.HEADER_LENGTH];
+    value.mark(header.length);
+    final int length = IOUtils.read(value, header);
+    value.reset();
+    return detectMapper(header, 0, length, objectMapper);
+  }
+
+  private static InputStream markSupported(final InputStream value) {
+    return value.markSupported() ? value : new BufferedInputStream(value);
+  }
+
   public <T> T fromMap(final Map input, final Class<T> outputClass) {
     return fromMap(input, getObjectMapper(), outputClass);
   }
@@ -42,7 +275,7 @@ public class JsonUtils {
   public <T> T fromMap(
       final Map input, final ObjectMapper objectMapper, final Class<T> outputClass) {
     try {
-      final T value = objectMapper.readValue(objectMapper.writeValueAsBytes(input), outputClass);
+      final T value = convert(input, objectMapper, outputClass);
       return value;
     } catch (final Exception e) {
       logger.error("unable to transform to outputClass", e);
@@ -68,8 +301,7 @@ public class JsonUtils {
       final ObjectMapper objectMapper,
       final Map<String, Function<Object, Object>> valueChangeMap) {
     try {
-      final Map<String, Object> map =
-          objectMapper.readValue(objectMapper.writeValueAsBytes(input), Map.class);
+      final Map<String, Object> map = convertToMap(input, objectMapper);
       return map.keySet().stream()
           .filter(s -> s != null)
           .filter(s -> null != map.get(s))
@@ -103,20 +335,122 @@ public class JsonUtils {
     if (input == null) {
       return null;
     }
+    // plain beans (no jackson annotations, only read/write properties) are copied field by field,
+    // untyped values keep their runtime types instead of becoming maps/json numbers; the copy
+    // would bypass registered modules and custom configuration, so those mappers convert
+    if (resultType == input.getClass()
+        && objectMapper.mixInCount() == 0
+        && (isFieldCopyClone() || isDefaultConfig(objectMapper))) {
+      final Optional<T> clone =
+          cloneUtils.deepClone(resultType.cast(input), CloneUtils::isPlainBean, false);
+      if (clone.isPresent()) {
+        return clone.get();
+      }
+    }
     try {
-      return objectMapper.readValue(objectMapper.writeValueAsBytes(input), resultType);
+      return convert(input, objectMapper, resultType);
     } catch (final Exception e) {
       logger.error("unable to serialize", e);
       throw new RuntimeException(e);
     }
   }
 
+  /**
+   * True when the mapper has no registered modules and the serialization features, inclusion,
+   * naming, visibility and default typing of a {@code new ObjectMapper()}. The result is cached per
+   * mapper, see {@link #getReader(ObjectMapper, Class)} for the configuration caveat.
+   */
+  boolean isDefaultConfig(final ObjectMapper objectMapper) {
+    final Boolean cached = defaultConfigMappers.get(objectMapper);
+    if (cached != null) {
+      return cached;
+    }
+    final SerializationConfig serialization = objectMapper.getSerializationConfig();
+    final DeserializationConfig deserialization = objectMapper.getDeserializationConfig();
+    final SerializationConfig defaultSerialization = DEFAULT_CONFIG_MAPPER.getSerializationConfig();
+    final DeserializationConfig defaultDeserialization =
+        DEFAULT_CONFIG_MAPPER.getDeserializationConfig();
+    final boolean result =
+        objectMapper.getRegisteredModuleIds().isEmpty()
+            && serialization.getPropertyNamingStrategy() == null
+            && serialization.getDefaultTyper(null) == null
+            && serialization.getSerializationFeatures()
+                == defaultSerialization.getSerializationFeatures()
+            && deserialization.getDeserializationFeatures()
+                == defaultDeserialization.getDeserializationFeatures()
+            && serialization
+                .getDefaultPropertyInclusion()
+                .equals(defaultSerialization.getDefaultPropertyInclusion())
+            && objectMapper
+                .getVisibilityChecker()
+                .toString()
+                .equals(DEFAULT_CONFIG_MAPPER.getVisibilityChecker().toString());
+    if (defaultConfigMappers.size() < MAX_CACHED_READERS_WRITERS) {
+      defaultConfigMappers.putIfAbsent(objectMapper, result);
+    }
+    return result;
+  }
+
   public Object toStringLazy(final Object input) {
     return toStringLazy(input, getObjectMapper());
   }
 
   public Object toStringLazy(final Object input, final ObjectMapper objectMapper) {
-    return new ToStringLazy(input, objectMapper);
+    return new ToStringLazy(input, objectMapper, this);
+  }
+
+  public void writeValue(final Object input, final OutputStream outputStream) {
+    writeValue(input, outputStream, getObjectMapper());
+  }
+
+  /**
+   * Serializes the input as UTF-8 json straight into the stream, without an intermediate {@link
+   * String}. The stream is not closed.
+   */
+  public void writeValue(
+      final Object input, final OutputStream outputStream, final ObjectMapper objectMapper) {
+    try (final JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      getWriterFor(objectMapper, input).writeValue(generator, input);
+    } catch (final Exception e) {
+      logger.error("unable to serialize to json", e);
+      throw new RuntimeException(e);
+    }
+  }
+
+  public ByteBuffer toByteBuffer(
+      final Object input, final ObjectMapper objectMapper, final DataFormat format) {
+    return toByteBuffer(input, getMapper(objectMapper, format));
+  }
+
+  public byte[] writeValueAsBytes(final Object input, final DataFormat format) {
+    return writeValueAsBytes(input, getObjectMapper(), format);
+  }
+
+  public byte[] writeValueAsBytes(
+      final Object input, final ObjectMapper objectMapper, final DataFormat format) {
+    final ObjectMapper mapper = getMapper(objectMapper, format);
+    try {
+      return getWriterFor(mapper, input).writeValueAsBytes(input);
+    } catch (final Exception e) {
+      logger.error("unable to serialize to " + format, e);
+      throw new RuntimeException(e);
+    }
+  }
+
+  public ByteBuffer toByteBuffer(final Object input) {
+    return toByteBuffer(input, getObjectMapper());
+  }
+
+  /**
+   * Serializes the input as UTF-8 json into a heap {@link ByteBuffer}. The returned buffer wraps
+   * the serialization buffer itself (no trailing copy), its position is 0 and its limit is the
+   * number of written bytes.
+   */
+  public ByteBuffer toByteBuffer(final Object input, final ObjectMapper objectMapper) {
+    final ExposedByteArrayOutputStream outputStream = new ExposedByteArrayOutputStream();
+    writeValue(input, outputStream, objectMapper);
+    return outputStream.toByteBuffer();
   }
 
   public <T> Optional<T> readValue(final String value, final Class<T> clazz) {
@@ -137,7 +471,7 @@ public class JsonUtils {
         .map(
             objectMapper -> {
               try {
-                return objectMapper.readValue(value, clazz);
+                return getReader(objectMapper, clazz).<T>readValue(value);
               } catch (final Exception e) {
                 logger.error("unable to deserialize", e);
               }
@@ -145,13 +479,19 @@ public class JsonUtils {
             });
   }
 
+  /**
+   * Reads text json, Smile or CBOR - the encoding is detected from the leading bytes, so data
+   * written before switching to a binary format can still be read.
+   */
   public <T> Optional<T> readValue(
       final byte[] value, final Class<T> clazz, final ObjectMapper objectMapper1) {
     return Optional.ofNullable(objectMapper1)
         .map(
             objectMapper -> {
               try {
-                return objectMapper.readValue(value, clazz);
+                final ObjectMapper mapper =
+                    detectMapper(value, 0, value.length, objectMapper);
+                return getReader(mapper, clazz).<T>readValue(value);
               } catch (final Exception e) {
                 logger.error("unable to deserialize", e);
               }
@@ -159,13 +499,16 @@ public class JsonUtils {
             });
   }
 
+  /** Same as {@link #readValue(byte[], Class, ObjectMapper)} for a stream. */
   public <T> Optional<T> readValue(
       final InputStream value, final Class<T> clazz, final ObjectMapper objectMapper1) {
     return Optional.ofNullable(objectMapper1)
         .map(
             objectMapper -> {
               try {
-                return objectMapper.readValue(value, clazz);
+                final InputStream inputStream = markSupported(value);
+                final ObjectMapper mapper = detectMapper(inputStream, objectMapper);
+                return getReader(mapper, clazz).<T>readValue(inputStream);
               } catch (final Exception e) {
                 logger.error("unable to deserialize", e);
               }
@@ -173,10 +516,581 @@ public class JsonUtils {
             });
   }
 
+  /**
+   * Reads a json array element by element. Only one element is materialized at a time and the
+   * elements are produced on demand, so the memory needed is bounded by the size of a single
+   * element instead of the whole document. If the root value is not an array it is emitted as the
+   * only element. Null elements are skipped.
+   */
+  public <T> Flux<T> readValues(final InputStream value, final Class<T> clazz) {
+    return readValues(value, clazz, getObjectMapper());
+  }
+
+  /**
+   * Incrementally decodes a json array delivered as a stream of byte chunks (e.g. an S3 object or
+   * a http response body) using the jackson non-blocking parser. Each element is emitted as soon as
+   * its last byte arrives, so memory stays bounded by one element plus one chunk. If the root value
+   * is not an array it is emitted as the only element. Null elements are skipped.
+   *
+   * <p>The format is detected from the leading bytes as in {@link #readValue(byte[], Class)}. Text
+   * json and Smile are decoded incrementally, CBOR fails with an error because jackson has no
+   * non-blocking CBOR parser - use {@link #readValues(InputStream, Class, ObjectMapper)} for it.
+   */
+  public <T> Flux<T> readValues(final Publisher<ByteBuffer> value, final Class<T> clazz) {
+    return readValues(value, clazz, getObjectMapper());
+  }
+
+  public <T> Flux<T> readValues(
+      final InputStream value, final Class<T> clazz, final ObjectMapper objectMapper) {
+    final InputStream inputStream = markSupported(value);
+    return Flux.generate(
+        () -> {
+          final ObjectMapper mapper = detectMapper(inputStream, objectMapper);
+          return Tuples.of(mapper.getFactory().createParser(inputStream), getReader(mapper, clazz));
+        },
+        (state, sink) -> {
+          final JsonParser parser = state.getT1();
+          try {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY && parser.getParsingContext().getParent().inRoot()) {
+              token = parser.nextToken();
+            }
+            while (token == JsonToken.VALUE_NULL) {
+              token = parser.nextToken();
+            }
+            if (token == null || token == JsonToken.END_ARRAY) {
+              sink.complete();
+              return state;
+            }
+            sink.next(state.getT2().<T>readValue(parser));
+          } catch (final Exception e) {
+            logger.error("unable to deserialize", e);
+            sink.error(e);
+          }
+          return state;
+        },
+        state -> {
+          try {
+            state.getT1().close();
+          } catch (final IOException e) {
+            logger.error("unable to close parser", e);
+          }
+        });
+  }
+
+  public <T> Flux<T> readValues(
+      final Publisher<ByteBuffer> value, final Class<T> clazz, final ObjectMapper objectMapper) {
+    return Flux.defer(
+        () -> {
+          final JsonArrayDecoder<T> decoder =
+              new JsonArrayDecoder<>(
+                  header -> detectMapper(header, 0, header.length, objectMapper),
+                  mapper -> getReader(mapper, clazz));
+          return Flux.from(value)
+              .concatMapIterable(decoder::decode)
+              .concatWith(Flux.defer(() -> Flux.fromIterable(decoder.endOfInput())))
+              .doOnError(throwable -> logger.error("unable to deserialize", throwable))
+              .doFinally(signalType -> decoder.close());
+        });
+  }
+
+  /**
+   * Reads only the parts of the document selected by the paths. The parser skips everything else
+   * at token level, so nothing outside of the selection is materialized. The result keeps the
+   * shape of the document: objects hold only the fields on a selected path and arrays only the
+   * elements containing a selected value. The map is empty when nothing matches or the root is not
+   * an object.
+   */
+  public Optional<Map<String, Object>> readPaths(final byte[] value, final String... paths) {
+    return readPaths(value, JsonPathSelector.compile(paths));
+  }
+
+  public Optional<Map<String, Object>> readPaths(
+      final byte[] value, final JsonPathSelector selector) {
+    return readPaths(value, selector, getObjectMapper());
+  }
+
+  public Optional<Map<String, Object>> readPaths(
+      final String value, final JsonPathSelector selector) {
+    return readPaths(value, selector, getObjectMapper());
+  }
+
+  public Optional<Map<String, Object>> readPaths(
+      final InputStream value, final JsonPathSelector selector) {
+    return readPaths(value, selector, getObjectMapper());
+  }
+
+  public Optional<Map<String, Object>> readPaths(
+      final byte[] value, final JsonPathSelector selector, final ObjectMapper objectMapper) {
+    try {
+      final ObjectMapper mapper = detectMapper(value, 0, value.length, objectMapper);
+      try (final JsonParser parser = mapper.getFactory().createParser(value)) {
+        return Optional.of(readPaths(parser, selector, mapper));
+      }
+    } catch (final Exception e) {
+      logger.error("unable to deserialize", e);
+    }
+    return Optional.empty();
+  }
+
+  public Optional<Map<String, Object>> readPaths(
+      final String value, final JsonPathSelector selector, final ObjectMapper objectMapper) {
+    try (final JsonParser parser = objectMapper.getFactory().createParser(value)) {
+      return Optional.of(readPaths(parser, selector, objectMapper));
+    } catch (final Exception e) {
+      logger.error("unable to deserialize", e);
+    }
+    return Optional.empty();
+  }
+
+  public Optional<Map<String, Object>> readPaths(
+      final InputStream value, final JsonPathSelector selector, final ObjectMapper objectMapper) {
+    try {
+      final InputStream inputStream = markSupported(value);
+      final ObjectMapper mapper = detectMapper(inputStream, objectMapper);
+      try (final JsonParser parser = mapper.getFactory().createParser(inputStream)) {
+        return Optional.of(readPaths(parser, selector, mapper));
+      }
+    } catch (final Exception e) {
+      logger.error("unable to deserialize", e);
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Serializes the input into a {@link TokenBuffer} and deserializes the buffered tokens into the
+   * requested type. Unlike a {@code writeValueAsBytes}/{@code readValue} round-trip there is no
+   * intermediate byte array and no UTF-8 encoding/decoding of the textual values.
+   */
+  <T> T convert(final Object input, final ObjectMapper objectMapper, final Class<T> outputClass)
+      throws IOException {
+    final TokenBuffer buffer = toTokenBuffer(input, objectMapper);
+    try (final JsonParser parser = buffer.asParser(objectMapper)) {
+      return getReader(objectMapper, outputClass).readValue(parser);
+    }
+  }
+
+  /**
+   * Same as {@link #convert(Object, ObjectMapper, Class)} with a {@link Map} target, but walks the
+   * buffered tokens directly. The buffer keeps the original {@link Number} instances (e.g. {@link
+   * Long} for a long field holding a small value) so they are normalized here to exactly what
+   * parsing the textual json would produce.
+   */
+  Map<String, Object> convertToMap(final Object input, final ObjectMapper objectMapper)
+      throws IOException {
+    final TokenBuffer buffer = toTokenBuffer(input, objectMapper);
+    try (final JsonParser parser = buffer.asParser(objectMapper)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        return objectMapper.readValue(parser, Map.class);
+      }
+      return (Map<String, Object>) readUntyped(parser, objectMapper);
+    } catch (final UnsupportedEmbeddedValueException e) {
+      return objectMapper.readValue(objectMapper.writeValueAsBytes(input), Map.class);
+    }
+  }
+
+  private TokenBuffer toTokenBuffer(final Object input, final ObjectMapper objectMapper)
+      throws IOException {
+    final TokenBuffer buffer = new TokenBuffer(objectMapper, false);
+    if (objectMapper.isEnabled(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)) {
+      buffer.forceUseOfBigDecimal(true);
+    }
+    getWriterFor(objectMapper, input).writeValue(buffer, input);
+    return buffer;
+  }
+
+  private Object readUntyped(final JsonParser parser, final ObjectMapper objectMapper)
+      throws IOException {
+    switch (parser.currentToken()) {
+      case START_OBJECT:
+        final Map<String, Object> map = new LinkedHashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          final String name = parser.getCurrentName();
+          parser.nextToken();
+          map.put(name, readUntyped(parser, objectMapper));
+        }
+        return map;
+      case START_ARRAY:
+        final List<Object> list = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          list.add(readUntyped(parser, objectMapper));
+        }
+        return list;
+      case VALUE_STRING:
+        return parser.getText();
+      case VALUE_NUMBER_INT:
+        return normalizeInt(parser, objectMapper);
+      case VALUE_NUMBER_FLOAT:
+        return normalizeFloat(parser.getNumberValue(), objectMapper);
+      case VALUE_TRUE:
+        return Boolean.TRUE;
+      case VALUE_FALSE:
+        return Boolean.FALSE;
+      case VALUE_NULL:
+        return null;
+      case VALUE_EMBEDDED_OBJECT:
+        final Object embedded = parser.getEmbeddedObject();
+        if (embedded instanceof byte[]) {
+          return objectMapper
+              .getSerializationConfig()
+              .getBase64Variant()
+              .encode((byte[]) embedded, false);
+        }
+        throw new UnsupportedEmbeddedValueException();
+      default:
+        throw new IllegalStateException("unexpected token " + parser.currentToken());
+    }
+  }
+
+  private Map<String, Object> readPaths(
+      final JsonParser parser, final JsonPathSelector selector, final ObjectMapper objectMapper)
+      throws IOException {
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      return new LinkedHashMap<>();
+    }
+    final Object result = select(parser, selector.getRoot(), objectMapper);
+    return result == NOT_SELECTED ? new LinkedHashMap<>() : (Map<String, Object>) result;
+  }
+
+  /** Reads the selected content of the current value, {@link #NOT_SELECTED} if there is none. */
+  private Object select(
+      final JsonParser parser, final JsonPathSelector.Node node, final ObjectMapper objectMapper)
+      throws IOException {
+    if (node.isTerminal()) {
+      return readUntyped(parser, objectMapper);
+    }
+    final JsonToken token = parser.currentToken();
+    if (token == JsonToken.START_OBJECT) {
+      Map<String, Object> map = null;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        final String name = parser.getCurrentName();
+        final JsonPathSelector.Node child = node.child(name);
+        parser.nextToken();
+        if (child == null) {
+          parser.skipChildren();
+          continue;
+        }
+        final Object value = select(parser, child, objectMapper);
+        if (value != NOT_SELECTED) {
+          if (map == null) {
+            map = new LinkedHashMap<>();
+          }
+          map.put(name, value);
+        }
+      }
+      return map == null ? NOT_SELECTED : map;
+    }
+    if (token == JsonToken.START_ARRAY) {
+      List<Object> list = null;
+      int index = 0;
+      while (parser.nextToken() != JsonToken.END_ARRAY) {
+        final JsonPathSelector.Node child = node.element(index++);
+        if (child == null) {
+          parser.skipChildren();
+          continue;
+        }
+        final Object value = select(parser, child, objectMapper);
+        if (value != NOT_SELECTED) {
+          if (list == null) {
+            list = new ArrayList<>();
+          }
+          list.add(value);
+        }
+      }
+      return list == null ? NOT_SELECTED : list;
+    }
+    return NOT_SELECTED;
+  }
+
+  /**
+   * The smallest of Integer/Long/BigInteger holding the value, as the untyped deserializer does.
+   * Only the values out of the long range go through a {@link BigInteger}.
+   */
+  private Object normalizeInt(final JsonParser parser, final ObjectMapper objectMapper)
+      throws IOException {
+    if (objectMapper.isEnabled(DeserializationFeature.USE_BIG_INTEGER_FOR_INTS)) {
+      return parser.getBigIntegerValue();
+    }
+    switch (parser.getNumberType()) {
+      case INT:
+        return normalizeLong(parser.getIntValue(), objectMapper);
+      case LONG:
+        return normalizeLong(parser.getLongValue(), objectMapper);
+      default:
+        final BigInteger value = parser.getBigIntegerValue();
+        return value.bitLength() < Long.SIZE ? normalizeLong(value.longValue(), objectMapper) : value;
+    }
+  }
+
+  private Object normalizeLong(final long value, final ObjectMapper objectMapper) {
+    if (objectMapper.isEnabled(DeserializationFeature.USE_LONG_FOR_INTS) || value != (int) value) {
+      return value;
+    }
+    return (int) value;
+  }
+
+  private Object normalizeFloat(final Number number, final ObjectMapper objectMapper) {
+    if (objectMapper.isEnabled(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)) {
+      if (number instanceof BigDecimal) {
+        return number;
+      }
+      return new BigDecimal(number.toString());
+    }
+    if (number instanceof Float) {
+      // the text representation of a float is parsed back as a double
+      return Double.parseDouble(number.toString());
+    }
+    return number.doubleValue();
+  }
+
+  /** Raised when the token buffer contains a value which has no textual json equivalent. */
+  private static class UnsupportedEmbeddedValueException extends RuntimeException {
+    UnsupportedEmbeddedValueException() {
+      super(null, null, false, false);
+    }
+  }
+
+  /**
+   * Splits a json document fed in chunks into its top level array elements. The tokens of the
+   * current element are buffered in a {@link TokenBuffer} and the element is deserialized as soon as
+   * it is complete. The parser is created once the leading bytes identifying the format have
+   * arrived, they may be split across chunks.
+   */
+  private static class JsonArrayDecoder<T> {
+    private final Function<byte[], ObjectMapper> mapperDetector;
+    private final Function<ObjectMapper, ObjectReader> readerFactory;
+    private ObjectMapper objectMapper;
+    private ObjectReader reader;
+    private JsonParser parser;
+    private DeserializationContext deserializationContext;
+    // the leading bytes received before the format is known
+    private ByteBuffer header;
+    private TokenBuffer element;
+    private int depth;
+    private int elementDepth;
+
+    JsonArrayDecoder(
+        final Function<byte[], ObjectMapper> mapperDetector,
+        final Function<ObjectMapper, ObjectReader> readerFactory) {
+      this.mapperDetector = mapperDetector;
+      this.readerFactory = readerFactory;
+    }
+
+    List<T> decode(final ByteBuffer byteBuffer) {
+      try {
+        final ByteBuffer input = parser == null ? collectHeader(byteBuffer) : byteBuffer;
+        if (input == null) {
+          return Collections.emptyList();
+        }
+        feed(input);
+        return readAvailable();
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    List<T> endOfInput() {
+      try {
+        final List<T> result = new ArrayList<>();
+        if (parser == null) {
+          // shorter than the header
+          final ByteBuffer input = header == null ? ByteBuffer.allocate(0) : header.flip();
+          createParser(input);
+          feed(input);
+          // the parser has to consume the input before the end of it is signalled
+          result.addAll(readAvailable());
+        }
+        ((NonBlockingInputFeeder) parser.getNonBlockingInputFeeder()).endOfInput();
+        result.addAll(readAvailable());
+        if (depth != 0) {
+          throw new JsonEOFException(parser, null, "unexpected end of json array");
+        }
+        return result;
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    void close() {
+      if (parser == null) {
+        return;
+      }
+      try {
+        parser.close();
+      } catch (final IOException e) {
+        logger.error("unable to close parser", e);
+      }
+    }
+
+    /**
+     * @return the input to feed once {@link DataFormat#HEADER_LENGTH} bytes have arrived, null
+     *     while still waiting for them
+     */
+    private ByteBuffer collectHeader(final ByteBuffer byteBuffer) throws IOException {
+      if (header == null && byteBuffer.remaining() >= DataFormat.HEADER_LENGTH) {
+        createParser(byteBuffer);
+        return byteBuffer;
+      }
+      final ByteBuffer collected =
+          ByteBuffer.allocate(
+              (header == null ? 0 : header.position()) + byteBuffer.remaining());
+      if (header != null) {
+        collected.put(header.flip());
+      }
+      collected.put(byteBuffer.duplicate());
+      header = collected;
+      if (collected.position() < DataFormat.HEADER_LENGTH) {
+        return null;
+      }
+      collected.flip();
+      createParser(collected);
+      header = null;
+      return collected;
+    }
+
+    private void createParser(final ByteBuffer input) throws IOException {
+      final byte[] leading = new byte[Math.min(DataFormat.HEADER_LENGTH, input.remaining())];
+      input.duplicate().get(leading);
+      objectMapper = mapperDetector.apply(leading);
+      final JsonFactory factory = objectMapper.getFactory();
+      if (!factory.canParseAsync()) {
+        throw new UnsupportedOperationException(
+            "no non-blocking parser for " + factory.getFormatName() + ", read it as a stream");
+      }
+      reader = readerFactory.apply(objectMapper);
+      // text json can be fed the buffers as they are, the binary parsers take only arrays
+      parser =
+          JsonFactory.FORMAT_NAME_JSON.equals(factory.getFormatName())
+              ? factory.createNonBlockingByteBufferParser()
+              : factory.createNonBlockingByteArrayParser();
+      deserializationContext =
+          ((DefaultDeserializationContext) objectMapper.getDeserializationContext())
+              .createInstance(
+                  objectMapper.getDeserializationConfig(),
+                  parser,
+                  objectMapper.getInjectableValues());
+    }
+
+    private void feed(final ByteBuffer byteBuffer) throws IOException {
+      final NonBlockingInputFeeder feeder = parser.getNonBlockingInputFeeder();
+      if (feeder instanceof ByteBufferFeeder) {
+        ((ByteBufferFeeder) feeder).feedInput(byteBuffer);
+        return;
+      }
+      if (byteBuffer.hasArray()) {
+        final int start = byteBuffer.arrayOffset() + byteBuffer.position();
+        ((ByteArrayFeeder) feeder)
+            .feedInput(byteBuffer.array(), start, start + byteBuffer.remaining());
+        return;
+      }
+      final byte[] bytes = new byte[byteBuffer.remaining()];
+      byteBuffer.duplicate().get(bytes);
+      ((ByteArrayFeeder) feeder).feedInput(bytes, 0, bytes.length);
+    }
+
+    private List<T> readAvailable() throws IOException {
+      List<T> result = Collections.emptyList();
+      JsonToken token;
+      while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+        if (depth == 0 && token == JsonToken.START_ARRAY) {
+          // the root array itself is not buffered, its elements are
+          depth = 1;
+          elementDepth = 1;
+          continue;
+        }
+        if (depth == 1 && elementDepth == 1 && token == JsonToken.END_ARRAY) {
+          depth = 0;
+          elementDepth = 0;
+          continue;
+        }
+        if (element == null) {
+          element = new TokenBuffer(parser, deserializationContext);
+          if (objectMapper.isEnabled(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)) {
+            element.forceUseOfBigDecimal(true);
+          }
+        }
+        element.copyCurrentEvent(parser);
+        if (token.isStructStart()) {
+          depth++;
+        } else if (token.isStructEnd()) {
+          depth--;
+        }
+        if (depth == elementDepth) {
+          final T value = readElement();
+          if (value != null) {
+            if (result.isEmpty()) {
+              result = new ArrayList<>();
+            }
+            result.add(value);
+          }
+        }
+      }
+      return result;
+    }
+
+    private T readElement() throws IOException {
+      try (final JsonParser elementParser = element.asParser(objectMapper)) {
+        return reader.readValue(elementParser);
+      } finally {
+        element = null;
+      }
+    }
+  }
+
+  /**
+   * The readers and writers of one mapper, looked up by type without allocating a composite key.
+   * Those bound to a view are kept per view.
+   */
+  private static class MapperCache {
+    private final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+    private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Map<Class<?>, ObjectReader>> viewReaders =
+        new ConcurrentHashMap<>();
+    private final Map<Class<?>, Map<Class<?>, ObjectWriter>> viewWriters =
+        new ConcurrentHashMap<>();
+
+    Map<Class<?>, ObjectReader> findReaders(final Class<?> view) {
+      return view == null ? readers : viewReaders.get(view);
+    }
+
+    Map<Class<?>, ObjectReader> getReaders(final Class<?> view) {
+      return view == null
+          ? readers
+          : viewReaders.computeIfAbsent(view, view1 -> new ConcurrentHashMap<>());
+    }
+
+    Map<Class<?>, ObjectWriter> findWriters(final Class<?> view) {
+      return view == null ? writers : viewWriters.get(view);
+    }
+
+    Map<Class<?>, ObjectWriter> getWriters(final Class<?> view) {
+      return view == null
+          ? writers
+          : viewWriters.computeIfAbsent(view, view1 -> new ConcurrentHashMap<>());
+    }
+  }
+
+  private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+    ExposedByteArrayOutputStream() {
+      super(1024);
+    }
+
+    ByteBuffer toByteBuffer() {
+      return ByteBuffer.wrap(buf, 0, count);
+    }
+  }
+
+  @Value
+  private static class FormatKey {
+    ObjectMapper objectMapper;
+    DataFormat format;
+  }
+
   @AllArgsConstructor
   private static class ToStringLazy {
     private Object input;
     private ObjectMapper objectMapper;
+    private JsonUtils utils;
 
     @Override
     public String toString() {
@@ -184,7 +1098,7 @@ public class JsonUtils {
         return StringUtils.EMPTY;
       }
       try {
-        final String value = objectMapper.writeValueAsString(input);
+        final String value = utils.getWriterFor(objectMapper, input).writeValueAsString(input);
         return value;
       } catch (final Exception e) {
         logger.error("unable to serialize to json", e);
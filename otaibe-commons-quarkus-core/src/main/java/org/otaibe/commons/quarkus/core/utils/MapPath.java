@@ -0,0 +1,94 @@
+package org.otaibe.commons.quarkus.core.utils;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.lang3.math.NumberUtils;
+
+/**
+ * Pre-compiled path into nested maps (e.g. parsed json or yaml). Create it once through {@link
+ * MapWrapper#compile(Class, String...)} and reuse it - the lookup walks the keys with a plain loop
+ * and does not allocate.
+ */
+public final class MapPath<T> {
+
+    private final String[] path;
+    private final List<String> segments;
+    private final Class<T> clazz;
+
+    MapPath(final Class<T> clazz, final String... path) {
+        this.clazz = clazz;
+        this.path = path == null ? new String[0] : path.clone();
+        this.segments = Collections.unmodifiableList(Arrays.asList(this.path));
+    }
+
+    /**
+     * @return the keys of the path, a read only list created with the path
+     */
+    public List<String> getSegments() {
+        return segments;
+    }
+
+    public T get(final Map node) {
+        return get(node, clazz);
+    }
+
+    /**
+     * @return the value at the path if it is an instance of the <code>type</code>, otherwise null
+     */
+    public <V> V get(final Map node, final Class<V> type) {
+        final Object value = find(node);
+        return type.isInstance(value) ? type.cast(value) : null;
+    }
+
+    public String getString(final Map node) {
+        return get(node, String.class);
+    }
+
+    public Integer getInteger(final Map node) {
+        final Object value = find(node);
+        if (value instanceof Integer) {
+            return (Integer) value;
+        }
+        return value instanceof String ? NumberUtils.createInteger((String) value) : null;
+    }
+
+    public BigDecimal getBigDecimal(final Map node) {
+        final Object value = find(node);
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        return value instanceof String ? NumberUtils.createBigDecimal((String) value) : null;
+    }
+
+    public Boolean getBoolean(final Map node) {
+        final Object value = find(node);
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        return Boolean.valueOf(value instanceof String ? (String) value : null);
+    }
+
+    public Object getObject(final Map node) {
+        return find(node);
+    }
+
+    public int length() {
+        return path.length;
+    }
+
+    private Object find(final Map node) {
+        Object result = node;
+        for (int i = 0; i < path.length && result != null; i++) {
+            result = ((Map) result).get(path[i]);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "MapPath" + segments;
+    }
+}
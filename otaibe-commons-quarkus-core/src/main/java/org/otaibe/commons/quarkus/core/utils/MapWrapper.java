@@ -1,10 +1,18 @@
 package org.otaibe.commons.quarkus.core.utils;
 
 import java.math.BigDecimal;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
@@ -19,6 +27,12 @@ import org.apache.commons.lang3.math.NumberUtils;
 @Slf4j
 public class MapWrapper {
 
+  public static final int MAX_COMPILED_PATHS = 1024;
+  private static final MapPath<Object> EMPTY_PATH = compile();
+  // the compiled paths by their keys, one level per key, so a lookup doesn't allocate
+  private static final PathNode COMPILED_PATHS = new PathNode();
+  private static final AtomicInteger NUM_COMPILED_PATHS = new AtomicInteger();
+
   private final CastUtils castUtils;
 
   public MapWrapper(final CastUtils castUtils) {
@@ -29,71 +43,235 @@ public class MapWrapper {
     public void init() {
     }
 
+    /**
+     * @return reusable accessor for the <code>path</code>; keep it in a (static) field when the path is
+     * known upfront
+     */
+    public static MapPath<Object> compile(final String... path) {
+        return compile(Object.class, path);
+    }
+
+    public static <T> MapPath<T> compile(final Class<T> clazz, final String... path) {
+        return new MapPath<>(clazz, path);
+    }
+
     public String getStringValue(final Map node, final String... path) {
-        return getValue(node, String.class, path);
+        return getPath(path).getString(node);
     }
 
     public Integer getIntegerValue(final Map node, final String... path) {
-        final Integer result = getValue(node, Integer.class, path);
-        if (result != null) {
-            return result;
-        }
-        return NumberUtils.createInteger(getStringValue(node, path));
+        return getPath(path).getInteger(node);
     }
 
     public BigDecimal getBigDecimalValue(final Map node, final String... path) {
-        final BigDecimal result = getValue(node, BigDecimal.class, path);
-        if (result != null) {
-            return result;
-        }
-        return NumberUtils.createBigDecimal(getStringValue(node, path));
+        return getPath(path).getBigDecimal(node);
     }
 
     public Boolean getBooleanValue(final Map node, final String... path) {
-        final Boolean result = getValue(node, Boolean.class, path);
-        if (result != null) {
-            return result;
-        }
-        final String stringValue = getStringValue(node, path);
-        return Boolean.valueOf(stringValue);
+        return getPath(path).getBoolean(node);
     }
 
     public Object getObjectValue(final Map node, final String... path) {
-        return getValue(node, Object.class, path);
+        return getPath(path).getObject(node);
     }
 
     public <T> T getValue(final Map node, final Class<T> clazz, final String... path) {
-        Optional nodeOptional = Optional.ofNullable(node);
-        if (ArrayUtils.isNotEmpty(path)) {
-            for (final String key : path) {
-                nodeOptional = nodeOptional.map(o -> ((Map) o).get(key));
+        return getPath(path).get(node, clazz);
+    }
+
+    /** Drops the compiled paths used by the varargs getters. */
+    public static void clearCompiledPaths() {
+        COMPILED_PATHS.children.clear();
+        NUM_COMPILED_PATHS.set(0);
+    }
+
+    protected MapPath<Object> getPath(final String... path) {
+        if (ArrayUtils.isEmpty(path)) {
+            return EMPTY_PATH;
+        }
+        PathNode node = COMPILED_PATHS;
+        for (int i = 0; i < path.length && node != null; i++) {
+            // a null key can't be a map key here, such paths are not cached
+            node = path[i] == null ? null : node.children.get(path[i]);
+        }
+        if (node != null && node.path != null) {
+            return node.path;
+        }
+        final MapPath<Object> compiled = compile(path);
+        if (NUM_COMPILED_PATHS.get() >= MAX_COMPILED_PATHS || compiled.getSegments().contains(null)) {
+            return compiled;
+        }
+        node = COMPILED_PATHS;
+        for (final String segment : compiled.getSegments()) {
+            node = node.children.computeIfAbsent(segment, s -> new PathNode());
+        }
+        synchronized (node) {
+            if (node.path == null) {
+                node.path = compiled;
+                NUM_COMPILED_PATHS.incrementAndGet();
             }
+            return node.path;
         }
-        return (T) nodeOptional
-                .map(o -> getCastUtils().as(clazz, o))
-                .orElse(null);
     }
 
     /**
      * @param map1
      * @param map2
-     * @return a new merged map where if duplicate key exists the map2 will override the value of map1
+     * @return a new merged map where if duplicate key exists the map2 will override the value of map1; the
+     * nested values are shared with the sources, see {@link #mergeStringObjectMaps(List)}
      */
     public Map<String, Object> mergeStringObjectMap(final Map<String, Object> map1, final Map<String, Object> map2) {
-        return Stream.of(map1, map2)
-                .flatMap(map -> map.entrySet().stream())
-                .filter(entry -> null != entry.getKey() && null != entry.getValue())
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        Map.Entry::getValue,
-                        (v1, v2) -> {
-                            if (Map.class.isAssignableFrom(v2.getClass())) {
-                                //log.info("{} {}", v1, v2);
-                                return mergeStringObjectMap((Map) v1, (Map) v2);
-                            }
-                            return v2;
-                        })
-                );
+        return mergeStringObjectMaps(Arrays.asList(map1, map2));
+    }
+
+    @SafeVarargs
+    public final Map<String, Object> mergeStringObjectMaps(final Map<String, Object>... maps) {
+        return mergeStringObjectMaps(Arrays.asList(maps));
+    }
+
+    /**
+     * Merges all the maps in a single pass - the later maps override the earlier ones and nested maps
+     * are merged recursively. Only the levels which have keys in more than one map are copied, all the
+     * other values (including whole nested maps) are shared with the source maps. Null keys and values
+     * of the merged levels are skipped.
+     * <p>
+     * The shared nested maps and lists are the ones of the sources - modifying them through the result
+     * modifies the sources as well (and the other way round). Only the top level and the merged levels
+     * are new maps. Use {@link #mergeImmutableStringObjectMaps(List)} when that matters.
+     *
+     * @return a new mutable merged map
+     */
+    public Map<String, Object> mergeStringObjectMaps(final List<? extends Map<String, Object>> maps) {
+        return (Map<String, Object>) merge(maps, false);
+    }
+
+    /**
+     * Same as {@link #mergeStringObjectMaps(List)} but the result is deeply immutable (nested maps and
+     * lists included), so it could be shared between threads without copying. Nested values which are
+     * already immutable results of this method are reused as they are.
+     */
+    public Map<String, Object> mergeImmutableStringObjectMaps(final List<? extends Map<String, Object>> maps) {
+        return (Map<String, Object>) merge(maps, true);
+    }
+
+    @SafeVarargs
+    public final Map<String, Object> mergeImmutableStringObjectMaps(final Map<String, Object>... maps) {
+        return mergeImmutableStringObjectMaps(Arrays.asList(maps));
+    }
+
+    private static Map merge(final List<? extends Map> maps, final boolean immutable) {
+        final Map<Object, Object> result = new HashMap<>();
+        // keys for which more than one source holds a map; everything else is taken as is
+        Map<Object, List<Map>> overlaps = null;
+        for (final Map<?, ?> map : maps) {
+            if (map == null) {
+                continue;
+            }
+            for (final Map.Entry<?, ?> entry : map.entrySet()) {
+                if (null == entry.getKey() || null == entry.getValue()) {
+                    continue;
+                }
+                final Object previous = result.put(entry.getKey(), entry.getValue());
+                if (previous == null) {
+                    continue;
+                }
+                if (previous instanceof Map && entry.getValue() instanceof Map) {
+                    if (overlaps == null) {
+                        overlaps = new HashMap<>();
+                    }
+                    overlaps.computeIfAbsent(entry.getKey(), k -> newOverlap((Map) previous))
+                            .add((Map) entry.getValue());
+                } else if (overlaps != null) {
+                    // a non map value overrides whatever was collected so far
+                    overlaps.remove(entry.getKey());
+                }
+            }
+        }
+        if (overlaps != null) {
+            overlaps.forEach((key, sources) -> result.put(key, merge(sources, immutable)));
+        }
+        if (!immutable) {
+            return result;
+        }
+        result.replaceAll((key, value) -> toImmutable(value));
+        return new ImmutableMap(result);
+    }
+
+    private static List<Map> newOverlap(final Map first) {
+        final List<Map> result = new ArrayList<>();
+        result.add(first);
+        return result;
+    }
+
+    private static Object toImmutable(final Object value) {
+        if (value instanceof ImmutableMap || value instanceof ImmutableList) {
+            return value;
+        }
+        if (value instanceof Map) {
+            final Map<Object, Object> result = new HashMap<>((Map<?, ?>) value);
+            result.replaceAll((key, o) -> toImmutable(o));
+            return new ImmutableMap(result);
+        }
+        if (value instanceof List) {
+            final List<Object> result = new ArrayList<>((List<?>) value);
+            result.replaceAll(MapWrapper::toImmutable);
+            return new ImmutableList(result);
+        }
+        return value;
+    }
+
+    private static final class ImmutableMap extends AbstractMap<Object, Object> {
+        private final Map<Object, Object> map;
+        private final Map<Object, Object> view;
+
+        private ImmutableMap(final Map<Object, Object> map) {
+            this.map = map;
+            this.view = Collections.unmodifiableMap(map);
+        }
+
+        @Override
+        public Set<Entry<Object, Object>> entrySet() {
+            return view.entrySet();
+        }
+
+        @Override
+        public Object get(final Object key) {
+            return map.get(key);
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+    }
+
+    private static final class ImmutableList extends AbstractList<Object> implements RandomAccess {
+        private final List<Object> list;
+
+        private ImmutableList(final List<Object> list) {
+            this.list = list;
+        }
+
+        @Override
+        public Object get(final int index) {
+            return list.get(index);
+        }
+
+        @Override
+        public int size() {
+            return list.size();
+        }
+    }
+
+    private static final class PathNode {
+        private final Map<String, PathNode> children = new ConcurrentHashMap<>();
+        // the path ending at this node, guarded by the node when set
+        private volatile MapPath<Object> path;
     }
 
 }
@@ -0,0 +1,80 @@
+package org.otaibe.commons.quarkus.core.utils;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Small lock free pool for objects which are expensive to create but cheap to reset (e.g. {@link
+ * java.util.zip.Deflater}). {@link #acquire()} never blocks - it creates a new instance when the pool
+ * is empty, and {@link #release(Object)} destroys the instance when the pool is already full.
+ */
+@Slf4j
+public class ObjectPool<T> {
+
+    private final int maxSize;
+    private final Supplier<T> factory;
+    private final Consumer<T> reset;
+    private final Consumer<T> destroy;
+    private final Queue<T> pool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    public ObjectPool(final int maxSize,
+                      final Supplier<T> factory,
+                      final Consumer<T> reset,
+                      final Consumer<T> destroy) {
+        this.maxSize = maxSize;
+        this.factory = factory;
+        this.reset = reset;
+        this.destroy = destroy;
+    }
+
+    public T acquire() {
+        final T t = pool.poll();
+        if (t == null) {
+            return factory.get();
+        }
+        size.decrementAndGet();
+        return t;
+    }
+
+    public void release(final T t) {
+        if (t == null) {
+            return;
+        }
+        try {
+            reset.accept(t);
+        } catch (final Exception e) {
+            log.warn("unable to reset pooled object, it is discarded", e);
+            destroy.accept(t);
+            return;
+        }
+        if (size.incrementAndGet() > maxSize) {
+            size.decrementAndGet();
+            destroy.accept(t);
+            return;
+        }
+        pool.offer(t);
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /** Number of idle instances currently held by the pool. */
+    public int getIdleCount() {
+        return size.get();
+    }
+
+    /** Destroys all the idle instances. */
+    public void clear() {
+        T t;
+        while ((t = pool.poll()) != null) {
+            size.decrementAndGet();
+            destroy.accept(t);
+        }
+    }
+}
@@ -1,78 +1,453 @@
 package org.otaibe.commons.quarkus.core.utils;
 
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Subscription;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.BaseSubscriber;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
 
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
 /*
  * Created by triphon on 2.11.20 г.
  */
+@Getter
 @Slf4j
 public class ReactorBackpressureHandler {
     public static final Sinks.EmitFailureHandler DEFAULT_EMIT_FAILURE_HANDLER =
             (signalType, emitResult) ->
                     emitResult.equals(Sinks.EmitResult.FAIL_NON_SERIALIZED) ? true : false;
 
+    /**
+     * Limit shared by all the {@link #handle(Flux, Function)} calls of this instance, could be an
+     * adaptive one (see {@link ConcurrencyLimit#aimd()} and {@link ConcurrencyLimit#gradient()}).
+     */
+    private final ConcurrencyLimit concurrencyLimit;
+    /**
+     * Optional limit of the started operations per second for all the calls of this instance, it is
+     * applied on top of the concurrency limit.
+     */
+    private final TokenBucket tokenBucket;
+    @Getter(AccessLevel.NONE)
+    private final AtomicInteger sharedPermits = new AtomicInteger(0);
+    // the calls sharing the permits of this instance, woken up when one of them releases a permit
+    @Getter(AccessLevel.NONE)
+    private final Set<Drain<?, ?>> sharedDrains = ConcurrentHashMap.newKeySet();
+    @Getter(AccessLevel.NONE)
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    @Getter(AccessLevel.NONE)
+    private final AtomicInteger queueDepth = new AtomicInteger(0);
+
+    public ReactorBackpressureHandler() {
+        this(null, null);
+    }
+
+    @Builder
+    private ReactorBackpressureHandler(final ConcurrencyLimit concurrencyLimit,
+                                       final TokenBucket tokenBucket) {
+        this.concurrencyLimit = concurrencyLimit;
+        this.tokenBucket = tokenBucket;
+    }
+
     public static ReactorBackpressureHandler of() {
-        return new ReactorBackpressureHandler();
+        return builder().build();
+    }
+
+    public static ReactorBackpressureHandler of(final ConcurrencyLimit concurrencyLimit) {
+        return builder().concurrencyLimit(concurrencyLimit).build();
+    }
+
+    /**
+     * @return the current limit of the {@link #getConcurrencyLimit()} or 0 if there is none
+     */
+    public int getLimit() {
+        return concurrencyLimit == null ? 0 : concurrencyLimit.getLimit();
+    }
+
+    /**
+     * @return number of operations which are currently running (all the calls of this instance)
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return number of upstream elements waiting for a permit (all the calls of this instance)
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
     }
 
+    /**
+     * @param rate maximum number of simultaneous <code>handleFn</code> executions for this call
+     */
     public <T, V> Flux<V> handle(final Integer rate,
                                  final Flux<T> upstream,
                                  final Function<T, Mono<V>> handleFn) {
-        final AtomicInteger numSimultaneous = new AtomicInteger(0);
-        final AtomicLong total = new AtomicLong(0);
-        final AtomicBoolean isUpstreamCompleted = new AtomicBoolean(false);
-        final AtomicLong numProcessed = new AtomicLong(0);
-        final Sinks.Many<T> sink =  Sinks.many().unicast().<T>onBackpressureBuffer();
-        final Queue<T> buffer = new ConcurrentLinkedQueue<>();
-
-        final Flux<T> upstream1 = upstream
-                .doOnComplete(() -> {
-                    isUpstreamCompleted.set(true);
-                    if (total.get() == 0l) {
-                        sink.emitComplete(DEFAULT_EMIT_FAILURE_HANDLER);
-                    }
-                })
-                .doOnError(throwable -> sink.emitError(throwable, DEFAULT_EMIT_FAILURE_HANDLER))
-                .doOnNext(integer -> {
-                    total.incrementAndGet();
-                    sink.emitNext(integer, DEFAULT_EMIT_FAILURE_HANDLER);
-                });
-
-        return sink.asFlux()
-                .doOnSubscribe(subscription -> upstream1.subscribe())
-                .flatMap(t -> {
-                    if (numSimultaneous.get() >= rate) {
-                        buffer.add(t);
-                        return Mono.empty();
+        return handle(ConcurrencyLimit.fixed(rate), new AtomicInteger(0), upstream, null, handleFn);
+    }
+
+    /**
+     * Same as {@link #handle(Integer, Flux, Function)} but the simultaneous executions are limited by the
+     * {@link #getConcurrencyLimit()} of this instance, counting the executions of all its calls.
+     */
+    public <T, V> Flux<V> handle(final Flux<T> upstream,
+                                 final Function<T, Mono<V>> handleFn) {
+        if (concurrencyLimit == null) {
+            throw new IllegalStateException("concurrencyLimit is not configured");
+        }
+        return handle(concurrencyLimit, sharedPermits, upstream, null, handleFn);
+    }
+
+    /**
+     * Elements with the same key are handled strictly in the upstream order, one at a time. Elements with
+     * different keys are handled in parallel, at most <code>rate</code> simultaneously.
+     */
+    public <T, K, V> Flux<V> handleByKey(final Integer rate,
+                                         final Flux<T> upstream,
+                                         final Function<T, K> keyFn,
+                                         final Function<T, Mono<V>> handleFn) {
+        return handle(ConcurrencyLimit.fixed(rate), new AtomicInteger(0), upstream, keyFn, handleFn);
+    }
+
+    /**
+     * Same as {@link #handleByKey(Integer, Flux, Function, Function)} but limited by the {@link
+     * #getConcurrencyLimit()} of this instance.
+     */
+    public <T, K, V> Flux<V> handleByKey(final Flux<T> upstream,
+                                         final Function<T, K> keyFn,
+                                         final Function<T, Mono<V>> handleFn) {
+        if (concurrencyLimit == null) {
+            throw new IllegalStateException("concurrencyLimit is not configured");
+        }
+        return handle(concurrencyLimit, sharedPermits, upstream, keyFn, handleFn);
+    }
+
+    /**
+     * @param keyFn null if the elements should not be ordered
+     */
+    protected <T, V> Flux<V> handle(final ConcurrencyLimit limit,
+                                    final AtomicInteger permits,
+                                    final Flux<T> upstream,
+                                    final Function<T, ?> keyFn,
+                                    final Function<T, Mono<V>> handleFn) {
+        return Flux.defer(() -> {
+            final Drain<T, V> drain = new Drain<>(limit, permits, keyFn, handleFn);
+            return drain.results.asFlux()
+                    .doOnSubscribe(subscription -> {
+                        if (drain.shared) {
+                            sharedDrains.add(drain);
+                        }
+                        upstream.subscribe(drain.upstream);
+                    })
+                    .doOnCancel(drain::cancel);
+        });
+    }
+
+    /**
+     * Queues the upstream elements and starts them while there are free permits. The loop is entered
+     * from the upstream signals and from the completed operations, only one thread runs it at a time.
+     * With a key function an element enters the queue only when there is no running or queued element
+     * with the same key, otherwise it waits in the lane of its key until the previous one completes.
+     */
+    private final class Drain<T, V> {
+        private final ConcurrencyLimit limit;
+        private final AtomicInteger permits;
+        private final Function<T, ?> keyFn;
+        private final Function<T, Mono<V>> handleFn;
+        private final boolean shared;
+        private final Sinks.Many<V> results = Sinks.many().unicast().<V>onBackpressureBuffer();
+        private final Queue<Operation> queue = new ConcurrentLinkedQueue<>();
+        private final Map<Object, Queue<Operation>> lanes = new HashMap<>();
+        private final AtomicInteger wip = new AtomicInteger(0);
+        private final AtomicInteger active = new AtomicInteger(0);
+        private final AtomicBoolean terminated = new AtomicBoolean(false);
+        private final Disposable.Composite running = Disposables.composite();
+        private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+        private volatile Disposable scheduledDrain;
+        private volatile boolean upstreamCompleted;
+        private final BaseSubscriber<T> upstream = new BaseSubscriber<T>() {
+            @Override
+            protected void hookOnNext(final T value) {
+                final Operation operation = new Operation(value, keyFn == null ? null : keyFn.apply(value));
+                queueDepth.incrementAndGet();
+                if (keyFn == null || enterLane(operation)) {
+                    queue.offer(operation);
+                }
+                drain();
+            }
+
+            @Override
+            protected void hookOnComplete() {
+                upstreamCompleted = true;
+                drain();
+            }
+
+            @Override
+            protected void hookOnError(final Throwable throwable) {
+                terminate(throwable);
+            }
+        };
+
+        private Drain(final ConcurrencyLimit limit,
+                      final AtomicInteger permits,
+                      final Function<T, ?> keyFn,
+                      final Function<T, Mono<V>> handleFn) {
+            this.limit = limit;
+            this.permits = permits;
+            this.keyFn = keyFn;
+            this.handleFn = handleFn;
+            this.shared = permits == sharedPermits;
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                while (!terminated.get() && !queue.isEmpty()) {
+                    final int started = tryAcquire();
+                    if (started == 0) {
+                        break;
                     }
-                    final int i = numSimultaneous.incrementAndGet();
-                    log.trace("before numSimultaneous={} result={}", i, t);
-                    return Mono.just(t);
-                })
-                .flatMap(t -> handleFn.apply(t))
-                .doOnNext(v -> {
-                    final int i = numSimultaneous.decrementAndGet();
-                    numProcessed.incrementAndGet();
-                    log.trace("after numSimultaneous={} result={}", i, v);
-
-                    if (buffer.peek() != null) {
-                        sink.emitNext(buffer.poll(), DEFAULT_EMIT_FAILURE_HANDLER);
+                    final long nanosToWait = tokenBucket == null ? 0 : tokenBucket.tryAcquire();
+                    if (nanosToWait > 0) {
+                        permits.decrementAndGet();
+                        wakeUpOthers();
+                        scheduleDrain(nanosToWait);
+                        break;
                     }
-                    if (numProcessed.get() == total.get() && isUpstreamCompleted.get()) {
-                        log.trace("will complete numProcessed={} total={}", numProcessed.get(), total.get());
-                        sink.emitComplete(DEFAULT_EMIT_FAILURE_HANDLER);
+                    final Operation operation = queue.poll();
+                    if (operation == null) {
+                        permits.decrementAndGet();
+                        wakeUpOthers();
+                        break;
                     }
-                });
+                    queueDepth.decrementAndGet();
+                    start(operation, started);
+                }
+                if (upstreamCompleted && queue.isEmpty() && active.get() == 0
+                        && terminated.compareAndSet(false, true)) {
+                    log.trace("will complete");
+                    sharedDrains.remove(this);
+                    results.emitComplete(DEFAULT_EMIT_FAILURE_HANDLER);
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * A permit released by one call may be the one another call of the instance is waiting for -
+         * otherwise that call would wait for its own upstream, which may have completed already.
+         */
+        private void wakeUpOthers() {
+            if (!shared) {
+                return;
+            }
+            for (final Drain<?, ?> other : sharedDrains) {
+                if (other != this && !other.queue.isEmpty()) {
+                    other.drain();
+                }
+            }
+        }
+
+        /**
+         * Retries the drain when the next token is available, without blocking the current thread.
+         */
+        private void scheduleDrain(final long nanosToWait) {
+            if (!drainScheduled.compareAndSet(false, true)) {
+                return;
+            }
+            scheduledDrain = Schedulers.parallel().schedule(() -> {
+                drainScheduled.set(false);
+                drain();
+            }, nanosToWait, TimeUnit.NANOSECONDS);
+            if (terminated.get()) {
+                scheduledDrain.dispose();
+            }
+        }
+
+        /**
+         * @return the number of permits in use including the acquired one or 0 when there is no free one
+         */
+        private int tryAcquire() {
+            while (true) {
+                final int current = permits.get();
+                if (current >= limit.getLimit()) {
+                    return 0;
+                }
+                if (permits.compareAndSet(current, current + 1)) {
+                    return current + 1;
+                }
+            }
+        }
+
+        /**
+         * @return true if the operation could start right away, false if it has been added to the lane of
+         * its key
+         */
+        private boolean enterLane(final Operation operation) {
+            synchronized (lanes) {
+                final Queue<Operation> lane = lanes.get(operation.key);
+                if (lane != null) {
+                    lane.offer(operation);
+                    return false;
+                }
+                lanes.put(operation.key, new ArrayDeque<>());
+                return true;
+            }
+        }
+
+        /**
+         * Queues the next operation with the same key, must happen before the operation is released so
+         * the completion check does not miss it.
+         */
+        private void leaveLane(final Operation operation) {
+            if (keyFn == null) {
+                return;
+            }
+            synchronized (lanes) {
+                final Queue<Operation> lane = lanes.get(operation.key);
+                final Operation next = lane == null ? null : lane.poll();
+                if (next == null) {
+                    lanes.remove(operation.key);
+                } else {
+                    queue.offer(next);
+                }
+            }
+        }
+
+        private void start(final Operation operation, final int started) {
+            active.incrementAndGet();
+            final int i = inFlight.incrementAndGet();
+            log.trace("before numSimultaneous={} result={}", i, operation.value);
+            operation.started = started;
+            operation.startNanos = System.nanoTime();
+            running.add(operation);
+            final Mono<V> mono;
+            try {
+                mono = handleFn.apply(operation.value);
+            } catch (final Exception e) {
+                operation.onError(e);
+                return;
+            }
+            mono.subscribe(operation);
+        }
+
+        private void release(final Operation operation, final boolean dropped) {
+            running.remove(operation);
+            limit.onSample(System.nanoTime() - operation.startNanos, operation.started, dropped);
+            permits.decrementAndGet();
+            final int i = inFlight.decrementAndGet();
+            active.decrementAndGet();
+            log.trace("after numSimultaneous={}", i);
+            wakeUpOthers();
+        }
+
+        private void terminate(final Throwable throwable) {
+            if (!terminated.compareAndSet(false, true)) {
+                return;
+            }
+            sharedDrains.remove(this);
+            upstream.dispose();
+            running.dispose();
+            disposeScheduledDrain();
+            clearQueue();
+            results.emitError(throwable, DEFAULT_EMIT_FAILURE_HANDLER);
+        }
+
+        private void cancel() {
+            if (!terminated.compareAndSet(false, true)) {
+                return;
+            }
+            sharedDrains.remove(this);
+            upstream.dispose();
+            running.dispose();
+            disposeScheduledDrain();
+            clearQueue();
+        }
+
+        private void disposeScheduledDrain() {
+            final Disposable disposable = scheduledDrain;
+            if (disposable != null) {
+                disposable.dispose();
+            }
+        }
+
+        private void clearQueue() {
+            while (queue.poll() != null) {
+                queueDepth.decrementAndGet();
+            }
+            synchronized (lanes) {
+                lanes.values().forEach(lane -> queueDepth.addAndGet(-lane.size()));
+                lanes.clear();
+            }
+        }
+
+        private final class Operation extends BaseSubscriber<V> {
+            private final T value;
+            private final Object key;
+            private final AtomicBoolean done = new AtomicBoolean(false);
+            private int started;
+            private long startNanos;
+
+            private Operation(final T value, final Object key) {
+                this.value = value;
+                this.key = key;
+            }
+
+            @Override
+            protected void hookOnSubscribe(final Subscription subscription) {
+                subscription.request(1);
+            }
+
+            @Override
+            protected void hookOnNext(final V value) {
+                results.emitNext(value, DEFAULT_EMIT_FAILURE_HANDLER);
+            }
+
+            @Override
+            protected void hookOnComplete() {
+                if (done.compareAndSet(false, true)) {
+                    leaveLane(this);
+                    release(this, false);
+                    drain();
+                }
+            }
+
+            @Override
+            protected void hookOnError(final Throwable throwable) {
+                if (done.compareAndSet(false, true)) {
+                    release(this, true);
+                    terminate(throwable);
+                }
+            }
+
+            @Override
+            protected void hookOnCancel() {
+                if (done.compareAndSet(false, true)) {
+                    release(this, false);
+                }
+            }
+        }
     }
 
 }
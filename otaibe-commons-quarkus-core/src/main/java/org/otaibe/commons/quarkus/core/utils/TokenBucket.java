@@ -0,0 +1,74 @@
+package org.otaibe.commons.quarkus.core.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time based rate limiter - the bucket holds up to <code>burst</code> tokens and is refilled with
+ * <code>permitsPerSecond</code> tokens per second. It never blocks, {@link #tryAcquire()} tells how
+ * long to wait for the next token instead.
+ */
+public class TokenBucket {
+
+    private final double permitsPerSecond;
+    private final long burst;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucket(final double permitsPerSecond, final long burst) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive: " + permitsPerSecond);
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("burst must be positive: " + burst);
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.tokensPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    public static TokenBucket of(final double permitsPerSecond, final long burst) {
+        return new TokenBucket(permitsPerSecond, burst);
+    }
+
+    /**
+     * @return 0 if a token has been taken, otherwise the nanoseconds until the next token is available
+     */
+    public synchronized long tryAcquire() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNano));
+    }
+
+    public synchronized double getAvailableTokens() {
+        refill();
+        return tokens;
+    }
+
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    public long getBurst() {
+        return burst;
+    }
+
+    private void refill() {
+        final long now = System.nanoTime();
+        final long elapsed = now - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(burst, tokens + elapsed * tokensPerNano);
+            lastRefillNanos = now;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TokenBucket{permitsPerSecond=" + permitsPerSecond + ", burst=" + burst + "}";
+    }
+}
@@ -1,13 +1,29 @@
 package org.otaibe.commons.quarkus.core.utils;
 
 import jakarta.annotation.PostConstruct;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.datatype.DatatypeConfigurationException;
@@ -15,6 +31,10 @@ import javax.xml.datatype.XMLGregorianCalendar;
 import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
@@ -28,7 +48,12 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.validator.routines.UrlValidator;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
 import org.w3c.dom.Document;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
 /**
  * Created by triphon on 14-6-14.
@@ -45,7 +70,19 @@ public class XmlUtils {
     public static final QName QNAME_TEXT = new QName(TEXT);
     public static final QName QNAME_URL = new QName(URL);
 
+    public static final int DEFAULT_POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+    /**
+     * Upper bound of the contexts with pools, the least recently used one loses its pools when a new
+     * context comes. Protects against contexts created per call.
+     */
+    public static final int MAX_POOLED_CONTEXTS = 64;
+
     private TransformerFactory transformerFactory;
+    private int poolSize = DEFAULT_POOL_SIZE;
+    // guarded by their own monitor, access ordered
+    private final Map<JAXBContext, ObjectPool<Marshaller>> marshallerPools = createPoolsMap();
+    private final Map<JAXBContext, ObjectPool<Unmarshaller>> unmarshallerPools = createPoolsMap();
+    private final XMLInputFactory xmlInputFactory = createXmlInputFactory();
 
     @PostConstruct
     public void init() {
@@ -67,7 +104,36 @@ public class XmlUtils {
     }
 
     public Object toStringLazy(final Object object, final ThreadLocal<Marshaller> marshaller) {
-        return new ToStringLazy(object, marshaller, this);
+        return new ToStringLazy(object, marshaller, null, this);
+    }
+
+    public Object toStringLazy(final Object object, final JAXBContext context) {
+        return new ToStringLazy(object, null, context, this);
+    }
+
+    /**
+     * Uses a marshaller from the pool of the <code>context</code>, so it is safe to call from any thread
+     * (event loop, worker or virtual). The context should be a shared instance - a pool is kept for each
+     * one.
+     */
+    public String objToXmlString(final Object object, final JAXBContext context) {
+        final StringWriter stringWriter = new StringWriter();
+        marshal(context, marshaller -> marshaller.marshal(object, stringWriter));
+        return stringWriter.toString();
+    }
+
+    public byte[] objToXmlBytes(final Object object, final JAXBContext context) {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        writeXml(object, context, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Writes the xml (in the encoding of the marshaller, UTF-8 by default) to the stream, the stream is
+     * not closed.
+     */
+    public void writeXml(final Object object, final JAXBContext context, final OutputStream outputStream) {
+        marshal(context, marshaller -> marshaller.marshal(object, outputStream));
     }
 
     public <T extends Object> T xmlStringToObject(final String xml, final ThreadLocal<Unmarshaller> unmarshaller) {
@@ -87,11 +153,215 @@ public class XmlUtils {
         }
     }
 
+    public <T extends Object> T xmlStringToObject(final Class<T> clazz, final String xml, final JAXBContext context) {
+        return unmarshal(context, unmarshaller -> (T) unmarshaller.unmarshal(new StreamSource(new StringReader(xml))));
+    }
+
+    /**
+     * Reads a single document from the stream, the stream is not closed.
+     */
+    public <T extends Object> T readXml(final Class<T> clazz, final InputStream inputStream, final JAXBContext context) {
+        return unmarshal(context, unmarshaller -> (T) unmarshaller.unmarshal(new StreamSource(inputStream)));
+    }
+
+    /**
+     * Streams the document with StAX and unmarshals each element with the <code>elementName</code> (namespace
+     * included) lazily, when it is requested - only the current element is held in memory. The parsing
+     * runs on {@link Schedulers#boundedElastic()} as it blocks on the stream, which is closed when the flux
+     * terminates or is cancelled.
+     */
+    public <T> Flux<T> readXmlElements(final Class<T> clazz,
+                                       final QName elementName,
+                                       final InputStream inputStream,
+                                       final JAXBContext context) {
+        return readXmlElements(clazz, elementName, () -> inputStream, context);
+    }
+
+    /**
+     * Same as {@link #readXmlElements(Class, QName, InputStream, JAXBContext)} for a document which arrives
+     * as buffers, e.g. a S3 or a http response body. Only a few buffers are requested ahead of the parser.
+     */
+    public <T> Flux<T> readXmlElements(final Class<T> clazz,
+                                       final QName elementName,
+                                       final Publisher<ByteBuffer> publisher,
+                                       final JAXBContext context) {
+        return Flux.defer(() -> {
+            final ByteBufferInputStream inputStream = new ByteBufferInputStream(publisher);
+            // the parser may be blocked waiting for a buffer, closing the stream wakes it up
+            return readXmlElements(clazz, elementName, () -> inputStream, context)
+                    .doOnCancel(inputStream::close);
+        });
+    }
+
+    protected <T> Flux<T> readXmlElements(final Class<T> clazz,
+                                          final QName elementName,
+                                          final Callable<InputStream> inputStreamSupplier,
+                                          final JAXBContext context) {
+        return Flux.<T, XmlSplitState>generate(
+                        () -> new XmlSplitState(inputStreamSupplier.call(), getUnmarshallerPool(context)),
+                        (state, sink) -> {
+                            try {
+                                final T next = state.next(clazz, elementName);
+                                if (next == null) {
+                                    sink.complete();
+                                } else {
+                                    sink.next(next);
+                                }
+                            } catch (final Exception e) {
+                                state.failed = true;
+                                sink.error(e);
+                            }
+                            return state;
+                        },
+                        XmlSplitState::close)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
     public <T extends Object> T deepClone(final T input, final ThreadLocal<Marshaller> marshaller, final ThreadLocal<Unmarshaller> unmarshaller) {
         final String s = toStringLazy(input, marshaller).toString();
         return xmlStringToObject(s, unmarshaller);
     }
 
+    public <T extends Object> T deepClone(final T input, final JAXBContext context) {
+        final byte[] bytes = objToXmlBytes(input, context);
+        return (T) readXml(input.getClass(), new ByteArrayInputStream(bytes), context);
+    }
+
+    public ObjectPool<Marshaller> getMarshallerPool(final JAXBContext context) {
+        return getPool(marshallerPools, context, jaxbContext -> new ObjectPool<>(
+                poolSize,
+                () -> {
+                    try {
+                        return jaxbContext.createMarshaller();
+                    } catch (final JAXBException e) {
+                        throw new RuntimeException(e);
+                    }
+                },
+                marshaller -> reset(marshaller, XmlUtils::resetMarshaller),
+                marshaller -> {
+                }));
+    }
+
+    public ObjectPool<Unmarshaller> getUnmarshallerPool(final JAXBContext context) {
+        return getPool(unmarshallerPools, context, jaxbContext -> new ObjectPool<>(
+                poolSize,
+                () -> {
+                    try {
+                        return jaxbContext.createUnmarshaller();
+                    } catch (final JAXBException e) {
+                        throw new RuntimeException(e);
+                    }
+                },
+                unmarshaller -> reset(unmarshaller, XmlUtils::resetUnmarshaller),
+                unmarshaller -> {
+                }));
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Maximum number of idle marshallers (and unmarshallers) kept for each context, applies to the pools
+     * created afterwards.
+     */
+    public void setPoolSize(final int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public void clearPools() {
+        synchronized (marshallerPools) {
+            marshallerPools.values().forEach(ObjectPool::clear);
+        }
+        synchronized (unmarshallerPools) {
+            unmarshallerPools.values().forEach(ObjectPool::clear);
+        }
+    }
+
+    /**
+     * Restores the defaults of the standard settings a borrower may have changed, so they don't leak to
+     * the next one. A schema location has no value to be reset to, such a marshaller is discarded.
+     * Adapters and implementation specific properties are not reset.
+     */
+    private static void resetMarshaller(final Marshaller marshaller) throws JAXBException {
+        if (marshaller.getProperty(Marshaller.JAXB_SCHEMA_LOCATION) != null
+                || marshaller.getProperty(Marshaller.JAXB_NO_NAMESPACE_SCHEMA_LOCATION) != null) {
+            throw new JAXBException("schema location set");
+        }
+        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, false);
+        marshaller.setProperty(Marshaller.JAXB_ENCODING, StandardCharsets.UTF_8.name());
+        marshaller.setProperty(Marshaller.JAXB_FRAGMENT, false);
+        marshaller.setEventHandler(null);
+        marshaller.setSchema(null);
+        marshaller.setListener(null);
+        marshaller.setAttachmentMarshaller(null);
+    }
+
+    private static void resetUnmarshaller(final Unmarshaller unmarshaller) throws JAXBException {
+        unmarshaller.setEventHandler(null);
+        unmarshaller.setSchema(null);
+        unmarshaller.setListener(null);
+        unmarshaller.setAttachmentUnmarshaller(null);
+    }
+
+    /**
+     * A failed reset makes the pool discard the instance.
+     */
+    private static <T> void reset(final T t, final JaxbConsumer<T> reset) {
+        try {
+            reset.accept(t);
+        } catch (final JAXBException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static <T> ObjectPool<T> getPool(final Map<JAXBContext, ObjectPool<T>> pools,
+                                             final JAXBContext context,
+                                             final Function<JAXBContext, ObjectPool<T>> poolFactory) {
+        synchronized (pools) {
+            return pools.computeIfAbsent(context, poolFactory);
+        }
+    }
+
+    private static <T> Map<JAXBContext, ObjectPool<T>> createPoolsMap() {
+        return new LinkedHashMap<JAXBContext, ObjectPool<T>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<JAXBContext, ObjectPool<T>> eldest) {
+                if (size() <= MAX_POOLED_CONTEXTS) {
+                    return false;
+                }
+                // the instances in use go back to the evicted pool and are collected with it
+                eldest.getValue().clear();
+                return true;
+            }
+        };
+    }
+
+    private void marshal(final JAXBContext context, final JaxbConsumer<Marshaller> fn) {
+        final ObjectPool<Marshaller> pool = getMarshallerPool(context);
+        final Marshaller marshaller = pool.acquire();
+        try {
+            fn.accept(marshaller);
+        } catch (final JAXBException e) {
+            // the marshaller is not returned to the pool, its state is unknown
+            throw new RuntimeException(e);
+        }
+        pool.release(marshaller);
+    }
+
+    private <T> T unmarshal(final JAXBContext context, final JaxbFunction<Unmarshaller, T> fn) {
+        final ObjectPool<Unmarshaller> pool = getUnmarshallerPool(context);
+        final Unmarshaller unmarshaller = pool.acquire();
+        final T result;
+        try {
+            result = fn.apply(unmarshaller);
+        } catch (final JAXBException e) {
+            throw new RuntimeException(e);
+        }
+        pool.release(unmarshaller);
+        return result;
+    }
+
     public <T extends Object> T[] createArray(final Class<T> clazz, final T... objects) {
         final T[] res = (T[]) Array.newInstance(clazz, objects.length);
         for (int i = 0; i < objects.length; i++) {
@@ -175,15 +445,177 @@ public class XmlUtils {
         return new JAXBElement<>(qName, String.class, text1);
     }
 
+    /**
+     * Secured against XXE - DTDs and external entities are not supported.
+     */
+    protected XMLInputFactory createXmlInputFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    private class XmlSplitState {
+        private final InputStream inputStream;
+        private final ObjectPool<Unmarshaller> pool;
+        private final Unmarshaller unmarshaller;
+        private final XMLStreamReader reader;
+        private boolean failed;
+
+        private XmlSplitState(final InputStream inputStream, final ObjectPool<Unmarshaller> pool) throws XMLStreamException {
+            this.inputStream = inputStream;
+            this.pool = pool;
+            try {
+                this.reader = xmlInputFactory.createXMLStreamReader(inputStream);
+            } catch (final XMLStreamException e) {
+                IOUtils.closeQuietly(inputStream);
+                throw e;
+            }
+            this.unmarshaller = pool.acquire();
+        }
+
+        /**
+         * @return the next element or null at the end of the document
+         */
+        private <T> T next(final Class<T> clazz, final QName elementName) throws XMLStreamException, JAXBException {
+            while (true) {
+                // after an unmarshal the reader is already on the event following the element
+                if (reader.getEventType() == XMLStreamConstants.START_ELEMENT
+                        && elementName.equals(reader.getName())) {
+                    return unmarshaller.unmarshal(reader, clazz).getValue();
+                }
+                if (!reader.hasNext()) {
+                    return null;
+                }
+                reader.next();
+            }
+        }
+
+        private void close() {
+            try {
+                reader.close();
+            } catch (final XMLStreamException e) {
+                log.warn("unable to close xml reader", e);
+            }
+            IOUtils.closeQuietly(inputStream);
+            if (!failed) {
+                pool.release(unmarshaller);
+            }
+        }
+    }
+
+    /**
+     * Blocking view of a buffers publisher for the StAX parser - the reading thread waits for the next
+     * buffer, which is requested only after the previous ones are consumed.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private static final int PREFETCH = 4;
+        private static final Object COMPLETE = new Object();
+
+        private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+        private final BaseSubscriber<ByteBuffer> subscriber = new BaseSubscriber<ByteBuffer>() {
+            @Override
+            protected void hookOnSubscribe(final Subscription subscription) {
+                subscription.request(PREFETCH);
+            }
+
+            @Override
+            protected void hookOnNext(final ByteBuffer value) {
+                queue.offer(value);
+            }
+
+            @Override
+            protected void hookOnComplete() {
+                queue.offer(COMPLETE);
+            }
+
+            @Override
+            protected void hookOnError(final Throwable throwable) {
+                queue.offer(throwable);
+            }
+        };
+        private ByteBuffer current;
+        private volatile boolean completed;
+
+        private ByteBufferInputStream(final Publisher<ByteBuffer> publisher) {
+            publisher.subscribe(subscriber);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] bytes = new byte[1];
+            return read(bytes, 0, 1) == -1 ? -1 : bytes[0] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (current == null || !current.hasRemaining()) {
+                if (completed) {
+                    return -1;
+                }
+                final Object next;
+                try {
+                    next = queue.take();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+                if (next == COMPLETE) {
+                    completed = true;
+                } else if (next instanceof Throwable) {
+                    completed = true;
+                    throw new IOException((Throwable) next);
+                } else {
+                    current = (ByteBuffer) next;
+                    subscriber.request(1);
+                }
+            }
+            final int n = Math.min(len, current.remaining());
+            current.get(bytes, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return current == null ? 0 : current.remaining();
+        }
+
+        @Override
+        public void close() {
+            completed = true;
+            subscriber.dispose();
+            queue.clear();
+            // wakes up a reader blocked in take
+            queue.offer(COMPLETE);
+        }
+    }
+
+    @FunctionalInterface
+    private interface JaxbConsumer<T> {
+        void accept(T t) throws JAXBException;
+    }
+
+    @FunctionalInterface
+    private interface JaxbFunction<T, R> {
+        R apply(T t) throws JAXBException;
+    }
+
     @AllArgsConstructor
     private static class ToStringLazy {
         private Object input;
         private ThreadLocal<Marshaller> marshaller;
+        private JAXBContext context;
         private XmlUtils utils;
 
         @Override
         public String toString() {
             try {
+                if (context != null) {
+                    return utils.objToXmlString(input, context);
+                }
                 return utils.objToXmlString(input, marshaller);
             } catch (final Exception e) {
                 log.error("unable to serialize", e);
@@ -3,27 +3,72 @@ package org.otaibe.commons.quarkus.core.utils;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.inject.Inject;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
 import java.util.Optional;
-import java.util.zip.GZIPInputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
 import lombok.Getter;
 import org.apache.commons.io.IOUtils;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
 
 /**
  * Created by triphon on 15-8-16.
+ *
+ * <p>Gzip (RFC 1952) compression and decompression. The {@link Deflater}/{@link Inflater} instances
+ * are pooled (their native zlib state is expensive to allocate) and all the variants stream - none
+ * of them needs the compressed and the decompressed data in memory at the same time.
  */
 @Getter
 public class ZipUtils {
 
+    public static final int BUFFER_SIZE = 8192;
+    public static final int MAX_POOLED_CODERS = 32;
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final int HEADER_SIZE = 10;
+    private static final int TRAILER_SIZE = 8;
+    private static final byte[] HEADER = {
+            (byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8), Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+    };
+
     @Inject
     JsonUtils jsonUtils;
 
+    private final ObjectPool<Deflater> deflaterPool = new ObjectPool<>(
+            MAX_POOLED_CODERS,
+            () -> new Deflater(Deflater.DEFAULT_COMPRESSION, true),
+            Deflater::reset,
+            Deflater::end);
+    private final ObjectPool<Inflater> inflaterPool = new ObjectPool<>(
+            MAX_POOLED_CODERS,
+            () -> new Inflater(true),
+            Inflater::reset,
+            Inflater::end);
+
     public String gunZip(final byte[] data) throws Exception {
-        try (final ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(data)) {
-            try (final InputStream inputStream = new GZIPInputStream(byteArrayInputStream)){
-                return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
-            }
+        try (final InputStream inputStream = gunZip(new ByteArrayInputStream(data))) {
+            return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
         }
     }
 
@@ -32,13 +77,479 @@ public class ZipUtils {
     }
 
     public <T> Optional<T> gunZip(final byte[] data, final Class<T> clazz, final ObjectMapper objectMapper) throws Exception {
-        try (final ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(data)) {
-            try (final InputStream inputStream = new GZIPInputStream(byteArrayInputStream)){
-                if (String.class.equals(clazz)) {
-                    return Optional.ofNullable(IOUtils.toString(inputStream, StandardCharsets.UTF_8))
-                            .map(s -> (T) s);
+        try (final InputStream inputStream = gunZip(new ByteArrayInputStream(data))) {
+            if (String.class.equals(clazz)) {
+                return Optional.ofNullable(IOUtils.toString(inputStream, StandardCharsets.UTF_8))
+                        .map(s -> (T) s);
+            }
+            return getJsonUtils().readValue(inputStream, clazz, objectMapper);
+        }
+    }
+
+    /**
+     * Decompresses the stream while it is read. Closing the returned stream closes the source and
+     * returns the {@link Inflater} to the pool.
+     */
+    public InputStream gunZip(final InputStream inputStream) {
+        return new GunzipInputStream(inputStream, new GunzipDecoder(inflaterPool));
+    }
+
+    /**
+     * Decompresses a stream of compressed chunks (e.g. an S3 object body) chunk by chunk, without
+     * blocking.
+     */
+    public Flux<ByteBuffer> gunZip(final Publisher<ByteBuffer> data) {
+        return Flux.using(
+                () -> new GunzipDecoder(inflaterPool),
+                decoder -> Flux.from(data)
+                        .concatMapIterable(decoder::decode)
+                        .concatWith(Flux.defer(() -> Flux.fromIterable(decoder.endOfInput()))),
+                GunzipDecoder::close);
+    }
+
+    /** Decompresses and decodes the elements of a gzipped json array, see {@link JsonUtils#readValues(Publisher, Class, ObjectMapper)}. */
+    public <T> Flux<T> gunZipValues(final Publisher<ByteBuffer> data, final Class<T> clazz) {
+        return gunZipValues(data, clazz, getJsonUtils().getObjectMapper());
+    }
+
+    public <T> Flux<T> gunZipValues(final Publisher<ByteBuffer> data, final Class<T> clazz, final ObjectMapper objectMapper) {
+        return getJsonUtils().readValues(gunZip(data), clazz, objectMapper);
+    }
+
+    public byte[] gzip(final byte[] data) throws Exception {
+        final ByteArrayOutputStream result = new ByteArrayOutputStream(Math.max(data.length / 2, 64));
+        try (final OutputStream outputStream = gzip(result)) {
+            outputStream.write(data);
+        }
+        return result.toByteArray();
+    }
+
+    public byte[] gzip(final String data) throws Exception {
+        return gzip(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public byte[] gzipObject(final Object data) throws Exception {
+        return gzipObject(data, getJsonUtils().getObjectMapper());
+    }
+
+    /** Serializes the object straight into the compressor, no intermediate json string/bytes. */
+    public byte[] gzipObject(final Object data, final ObjectMapper objectMapper) throws Exception {
+        final ByteArrayOutputStream result = new ByteArrayOutputStream(BUFFER_SIZE);
+        try (final OutputStream outputStream = gzip(result)) {
+            getJsonUtils().writeValue(data, outputStream, objectMapper);
+        }
+        return result.toByteArray();
+    }
+
+    /**
+     * Compresses everything written to the returned stream into the target. Closing the returned
+     * stream writes the gzip trailer, closes the target and returns the {@link Deflater} to the pool.
+     */
+    public OutputStream gzip(final OutputStream outputStream) {
+        return new GzipOutputStream(outputStream, new GzipEncoder(deflaterPool));
+    }
+
+    /** Compresses a stream of chunks without blocking, the gzip trailer is emitted on completion. */
+    public Flux<ByteBuffer> gzip(final Publisher<ByteBuffer> data) {
+        return Flux.using(
+                () -> new GzipEncoder(deflaterPool),
+                encoder -> Flux.from(data)
+                        .concatMapIterable(encoder::encode)
+                        .concatWith(Flux.defer(() -> Flux.fromIterable(encoder.finish()))),
+                GzipEncoder::close);
+    }
+
+    private static void writeIntLE(final byte[] bytes, final int offset, final long value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >> 8);
+        bytes[offset + 2] = (byte) (value >> 16);
+        bytes[offset + 3] = (byte) (value >> 24);
+    }
+
+    private static long readIntLE(final byte[] bytes, final int offset) {
+        return (bytes[offset] & 0xffL)
+                | (bytes[offset + 1] & 0xffL) << 8
+                | (bytes[offset + 2] & 0xffL) << 16
+                | (bytes[offset + 3] & 0xffL) << 24;
+    }
+
+    /** Push style gzip compressor, each call returns the compressed chunks available so far. */
+    private static class GzipEncoder {
+        private final ObjectPool<Deflater> pool;
+        private final CRC32 crc = new CRC32();
+        // the deflater output, only the produced bytes are copied out
+        private final byte[] scratch = new byte[BUFFER_SIZE];
+        private Deflater deflater;
+        private boolean headerWritten;
+
+        GzipEncoder(final ObjectPool<Deflater> pool) {
+            this.pool = pool;
+            this.deflater = pool.acquire();
+        }
+
+        List<ByteBuffer> encode(final ByteBuffer data) {
+            final List<ByteBuffer> result = new ArrayList<>();
+            writeHeader(result);
+            final ByteBuffer input = data.duplicate();
+            crc.update(input.duplicate());
+            deflater.setInput(input);
+            while (!deflater.needsInput()) {
+                deflate(result);
+            }
+            return result;
+        }
+
+        List<ByteBuffer> finish() {
+            final List<ByteBuffer> result = new ArrayList<>();
+            writeHeader(result);
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflate(result);
+            }
+            final byte[] trailer = new byte[TRAILER_SIZE];
+            writeIntLE(trailer, 0, crc.getValue());
+            writeIntLE(trailer, 4, deflater.getBytesRead());
+            result.add(ByteBuffer.wrap(trailer));
+            return result;
+        }
+
+        void close() {
+            pool.release(deflater);
+            deflater = null;
+        }
+
+        private void writeHeader(final List<ByteBuffer> result) {
+            if (!headerWritten) {
+                headerWritten = true;
+                result.add(ByteBuffer.wrap(HEADER.clone()));
+            }
+        }
+
+        private void deflate(final List<ByteBuffer> result) {
+            final int length = deflater.deflate(scratch);
+            if (length > 0) {
+                result.add(ByteBuffer.wrap(Arrays.copyOf(scratch, length)));
+            }
+        }
+    }
+
+    /**
+     * Push style gzip decompressor. Supports concatenated gzip members, the header and the trailer
+     * may be split across chunks.
+     */
+    private static class GunzipDecoder {
+        private static final int STATE_HEADER = 0;
+        private static final int STATE_DATA = 1;
+        private static final int STATE_TRAILER = 2;
+
+        private final ObjectPool<Inflater> pool;
+        private final CRC32 crc = new CRC32();
+        private final ByteArrayOutputStream pending = new ByteArrayOutputStream(64);
+        private Inflater inflater;
+        private int state = STATE_HEADER;
+        private int members;
+
+        GunzipDecoder(final ObjectPool<Inflater> pool) {
+            this.pool = pool;
+            this.inflater = pool.acquire();
+        }
+
+        List<ByteBuffer> decode(final ByteBuffer data) {
+            final List<ByteBuffer> result = new ArrayList<>();
+            ByteBuffer input = data.duplicate();
+            try {
+                while (input != null) {
+                    switch (state) {
+                        case STATE_HEADER:
+                            input = readHeader(input);
+                            break;
+                        case STATE_DATA:
+                            input = inflate(input, result);
+                            break;
+                        default:
+                            input = readTrailer(input);
+                            break;
+                    }
+                }
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return result;
+        }
+
+        List<ByteBuffer> endOfInput() {
+            if (state != STATE_HEADER || pending.size() > 0 || members == 0) {
+                throw new UncheckedIOException(new EOFException("Unexpected end of gzip input stream"));
+            }
+            return Collections.emptyList();
+        }
+
+        void close() {
+            pool.release(inflater);
+            inflater = null;
+        }
+
+        /** Returns the bytes left after the header or null when more input is needed. */
+        private ByteBuffer readHeader(final ByteBuffer input) throws IOException {
+            if (!input.hasRemaining()) {
+                return null;
+            }
+            append(input);
+            final byte[] bytes = pending.toByteArray();
+            final int headerLength = headerLength(bytes);
+            if (headerLength < 0) {
+                return null;
+            }
+            pending.reset();
+            inflater.reset();
+            crc.reset();
+            state = STATE_DATA;
+            return ByteBuffer.wrap(bytes, headerLength, bytes.length - headerLength);
+        }
+
+        private ByteBuffer inflate(final ByteBuffer input, final List<ByteBuffer> result) throws IOException {
+            inflater.setInput(input);
+            try {
+                while (true) {
+                    final byte[] buffer = new byte[BUFFER_SIZE];
+                    final int length = inflater.inflate(buffer);
+                    if (length > 0) {
+                        crc.update(buffer, 0, length);
+                        result.add(ByteBuffer.wrap(buffer, 0, length));
+                    }
+                    if (inflater.finished()) {
+                        state = STATE_TRAILER;
+                        return input;
+                    }
+                    if (inflater.needsInput()) {
+                        return null;
+                    }
+                    if (length == 0) {
+                        throw new ZipException(inflater.needsDictionary() ?
+                                "gzip data needs a dictionary" : "invalid gzip data");
+                    }
+                }
+            } catch (final DataFormatException e) {
+                throw new ZipException(e.getMessage());
+            }
+        }
+
+        private ByteBuffer readTrailer(final ByteBuffer input) throws IOException {
+            append(input);
+            if (pending.size() < TRAILER_SIZE) {
+                return null;
+            }
+            final byte[] bytes = pending.toByteArray();
+            if (readIntLE(bytes, 0) != crc.getValue()) {
+                throw new ZipException("Corrupt GZIP trailer");
+            }
+            if (readIntLE(bytes, 4) != (inflater.getBytesWritten() & 0xffffffffL)) {
+                throw new ZipException("Corrupt GZIP trailer");
+            }
+            pending.reset();
+            members++;
+            state = STATE_HEADER;
+            return ByteBuffer.wrap(bytes, TRAILER_SIZE, bytes.length - TRAILER_SIZE);
+        }
+
+        private void append(final ByteBuffer input) {
+            if (input.hasArray()) {
+                pending.write(input.array(), input.arrayOffset() + input.position(), input.remaining());
+                input.position(input.limit());
+                return;
+            }
+            while (input.hasRemaining()) {
+                pending.write(input.get());
+            }
+        }
+
+        /** The length of the gzip header or -1 if it is not complete yet. */
+        private static int headerLength(final byte[] bytes) throws IOException {
+            if (bytes.length < HEADER_SIZE) {
+                return -1;
+            }
+            if ((bytes[0] & 0xff | (bytes[1] & 0xff) << 8) != GZIP_MAGIC) {
+                throw new ZipException("Not in GZIP format");
+            }
+            if (bytes[2] != Deflater.DEFLATED) {
+                throw new ZipException("Unsupported compression method");
+            }
+            final int flags = bytes[3] & 0xff;
+            int position = HEADER_SIZE;
+            if ((flags & FEXTRA) == FEXTRA) {
+                if (bytes.length < position + 2) {
+                    return -1;
+                }
+                position += 2 + (bytes[position] & 0xff | (bytes[position + 1] & 0xff) << 8);
+            }
+            if ((flags & FNAME) == FNAME) {
+                position = skipZeroTerminated(bytes, position);
+            }
+            if ((flags & FCOMMENT) == FCOMMENT && position >= 0) {
+                position = skipZeroTerminated(bytes, position);
+            }
+            if ((flags & FHCRC) == FHCRC && position >= 0) {
+                position += 2;
+            }
+            return position < 0 || position > bytes.length ? -1 : position;
+        }
+
+        private static int skipZeroTerminated(final byte[] bytes, final int position) {
+            for (int i = position; i < bytes.length; i++) {
+                if (bytes[i] == 0) {
+                    return i + 1;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static class GzipOutputStream extends OutputStream {
+        private static final int SINGLE_BYTES_SIZE = 512;
+
+        private final OutputStream outputStream;
+        private final GzipEncoder encoder;
+        // single byte writes are collected and deflated together
+        private final byte[] singleBytes = new byte[SINGLE_BYTES_SIZE];
+        private int singleBytesLength;
+        private boolean closed;
+
+        GzipOutputStream(final OutputStream outputStream, final GzipEncoder encoder) {
+            this.outputStream = outputStream;
+            this.encoder = encoder;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            ensureOpen();
+            if (singleBytesLength == singleBytes.length) {
+                writeSingleBytes();
+            }
+            singleBytes[singleBytesLength++] = (byte) b;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            ensureOpen();
+            writeSingleBytes();
+            writeAll(encoder.encode(ByteBuffer.wrap(b, off, len)));
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (!closed) {
+                writeSingleBytes();
+            }
+            outputStream.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                writeSingleBytes();
+                writeAll(encoder.finish());
+            } finally {
+                encoder.close();
+                outputStream.close();
+            }
+        }
+
+        private void ensureOpen() throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+        }
+
+        private void writeSingleBytes() throws IOException {
+            if (singleBytesLength > 0) {
+                final int length = singleBytesLength;
+                singleBytesLength = 0;
+                writeAll(encoder.encode(ByteBuffer.wrap(singleBytes, 0, length)));
+            }
+        }
+
+        private void writeAll(final List<ByteBuffer> buffers) throws IOException {
+            for (final ByteBuffer buffer : buffers) {
+                outputStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            }
+        }
+    }
+
+    private static class GunzipInputStream extends InputStream {
+        private final InputStream inputStream;
+        private final GunzipDecoder decoder;
+        private final Deque<ByteBuffer> ready = new ArrayDeque<>();
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private boolean eof;
+        private boolean closed;
+
+        GunzipInputStream(final InputStream inputStream, final GunzipDecoder decoder) {
+            this.inputStream = inputStream;
+            this.decoder = decoder;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (len == 0) {
+                return 0;
+            }
+            while (ready.isEmpty()) {
+                if (eof) {
+                    return -1;
+                }
+                fill();
+            }
+            final ByteBuffer current = ready.peek();
+            final int length = Math.min(len, current.remaining());
+            current.get(b, off, length);
+            if (!current.hasRemaining()) {
+                ready.poll();
+            }
+            return length;
+        }
+
+        @Override
+        public int available() {
+            return ready.isEmpty() ? 0 : ready.peek().remaining();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                inputStream.close();
+            } finally {
+                decoder.close();
+            }
+        }
+
+        private void fill() throws IOException {
+            try {
+                final int length = inputStream.read(buffer);
+                if (length < 0) {
+                    eof = true;
+                    ready.addAll(decoder.endOfInput());
+                    return;
                 }
-                return getJsonUtils().readValue(inputStream, clazz, objectMapper);
+                ready.addAll(decoder.decode(ByteBuffer.wrap(buffer, 0, length)));
+            } catch (final UncheckedIOException e) {
+                throw e.getCause();
             }
         }
     }
@@ -0,0 +1,93 @@
+package org.otaibe.commons.quarkus.core.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+class ReactorBackpressureHandlerTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * The second call gets all its elements while the first one holds the only permit, then its upstream
+     * completes - it can progress only when the first call hands over the released permits.
+     */
+    @Test
+    void sharedPermitsWakeUpTheOtherCalls() {
+        final ReactorBackpressureHandler handler = ReactorBackpressureHandler.of(ConcurrencyLimit.fixed(1));
+
+        final Flux<Integer> first = handler.handle(Flux.just(1, 2, 3), this::slow);
+        final Flux<Integer> second = handler.handle(Flux.just(4, 5, 6), this::slow);
+
+        final List<Integer> result = Flux.merge(first, second).collectList().block(TIMEOUT);
+        Assertions.assertEquals(6, result.size());
+        Assertions.assertEquals(0, handler.getInFlight());
+        Assertions.assertEquals(0, handler.getQueueDepth());
+    }
+
+    /**
+     * Two calls share two permits. Within a call the elements of a key run one at a time in the upstream
+     * order, while the elements of different keys run in parallel.
+     */
+    @Test
+    void sharedPermitsWakeUpTheOtherCallsByKey() {
+        final ReactorBackpressureHandler handler = ReactorBackpressureHandler.of(ConcurrencyLimit.fixed(2));
+        final Map<Integer, AtomicInteger> inFlightByKey = new ConcurrentHashMap<>();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final AtomicBoolean sameKeyOverlap = new AtomicBoolean();
+        // the hundreds of an element are its call, the key is unique per call
+        final Function<Integer, Integer> keyFn = v -> v / 100 * 10 + v % 2;
+        final Function<Integer, Mono<Integer>> handleFn = v -> Mono.defer(() -> {
+            final AtomicInteger ofKey = inFlightByKey.computeIfAbsent(keyFn.apply(v), k -> new AtomicInteger());
+            if (ofKey.incrementAndGet() > 1) {
+                sameKeyOverlap.set(true);
+            }
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            // counted out before the result reaches the handler, which releases the permit then
+            return slow(v).map(result -> {
+                inFlight.decrementAndGet();
+                ofKey.decrementAndGet();
+                return result;
+            });
+        });
+
+        final Flux<Integer> first = handler.handleByKey(Flux.just(101, 102, 103, 104, 105, 106), keyFn, handleFn);
+        final Flux<Integer> second = handler.handleByKey(Flux.just(201, 202, 203, 204, 205, 206), keyFn, handleFn);
+
+        final List<Integer> result = Flux.merge(first, second).collectList().block(TIMEOUT);
+        Assertions.assertEquals(12, result.size());
+        for (final int key : List.of(10, 11, 20, 21)) {
+            final List<Integer> ofKey = result.stream()
+                    .filter(v -> keyFn.apply(v) == key)
+                    .collect(Collectors.toList());
+            Assertions.assertEquals(ofKey.stream().sorted().collect(Collectors.toList()), ofKey, "order of key " + key);
+        }
+        Assertions.assertFalse(sameKeyOverlap.get(), "two elements of a key in flight");
+        Assertions.assertEquals(2, maxInFlight.get(), "different keys in parallel, within the permits");
+        Assertions.assertEquals(0, handler.getInFlight());
+    }
+
+    @Test
+    void noArgConstructor() {
+        final List<Integer> result = new ReactorBackpressureHandler()
+                .handle(1, Flux.just(1, 2, 3), this::slow)
+                .collectList()
+                .block(TIMEOUT);
+        Assertions.assertEquals(List.of(1, 2, 3), result);
+    }
+
+    private Mono<Integer> slow(final Integer value) {
+        return Mono.delay(Duration.ofMillis(20)).thenReturn(value);
+    }
+}
@@ -0,0 +1,86 @@
+package org.otaibe.commons.quarkus.core.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.Validator;
+import javax.xml.namespace.QName;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class XmlUtilsTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * The parser waits for a buffer which never comes - cancelling the flux has to wake it up, release the
+     * reading thread and cancel the upstream.
+     */
+    @Test
+    void cancelReleasesTheReaderOfAStalledPublisher() throws Exception {
+        final XmlUtils xmlUtils = new XmlUtils();
+        xmlUtils.init();
+        final CountDownLatch requested = new CountDownLatch(1);
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        final Flux<ByteBuffer> publisher = Flux.just(ByteBuffer.wrap(
+                        "<?xml version=\"1.0\"?><root><item>".getBytes(StandardCharsets.UTF_8)))
+                .concatWith(Flux.never())
+                .doOnRequest(n -> requested.countDown())
+                .doOnCancel(cancelled::countDown);
+
+        final Disposable subscription = xmlUtils
+                .readXmlElements(String.class, new QName("other"), publisher, new StubContext())
+                .subscribe(s -> {
+                }, e -> {
+                });
+        Assertions.assertTrue(requested.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+        awaitReader(true);
+
+        subscription.dispose();
+        Assertions.assertTrue(cancelled.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+        awaitReader(false);
+    }
+
+    private void awaitReader(final boolean blocked) throws InterruptedException {
+        final long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (isReaderBlocked() != blocked) {
+            Assertions.assertTrue(System.nanoTime() < deadline, "reader blocked=" + !blocked);
+            Thread.sleep(10);
+        }
+    }
+
+    private boolean isReaderBlocked() {
+        return Thread.getAllStackTraces().values().stream()
+                .flatMap(Arrays::stream)
+                .anyMatch(element -> element.getClassName().endsWith("$ByteBufferInputStream")
+                        && element.getMethodName().equals("read"));
+    }
+
+    /** No JAXB implementation on the test classpath, the document never reaches an element anyway. */
+    private static class StubContext extends JAXBContext {
+        @Override
+        public Unmarshaller createUnmarshaller() {
+            return null;
+        }
+
+        @Override
+        public Marshaller createMarshaller() {
+            return null;
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public Validator createValidator() {
+            return null;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.otaibe.commons.quarkus.elasticsearch.client.dao;
 
 import jakarta.inject.Inject;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.function.BiFunction;
@@ -389,12 +390,16 @@ public abstract class AbstractElasticsearchReactiveDaoImplementation<T> {
             setVersion(t, versionNum);
           }
 
-          return Mono.just(getJsonUtils().toStringLazy(t).toString())
+          return Mono.fromCallable(() -> getJsonUtils().toByteBuffer(t))
               .flatMapMany(
-                  s ->
+                  byteBuffer ->
                       Flux.<T>create(
                           fluxSink -> {
-                            request.source(s, XContentType.JSON);
+                            request.source(
+                                byteBuffer.array(),
+                                byteBuffer.arrayOffset() + byteBuffer.position(),
+                                byteBuffer.remaining(),
+                                XContentType.JSON);
                             getRestClient()
                                 .indexAsync(
                                     request,
@@ -431,7 +436,12 @@ public abstract class AbstractElasticsearchReactiveDaoImplementation<T> {
         }
 
     final UpdateRequest request = new UpdateRequest(getTableName(), id);
-        request.doc(getJsonUtils().toStringLazy(data).toString(), XContentType.JSON);
+        final ByteBuffer byteBuffer = getJsonUtils().toByteBuffer(data);
+        request.doc(
+            byteBuffer.array(),
+            byteBuffer.arrayOffset() + byteBuffer.position(),
+            byteBuffer.remaining(),
+            XContentType.JSON);
         request.setRefreshPolicy(WriteRequest.RefreshPolicy.WAIT_UNTIL);
         request.retryOnConflict(5);
         request.fetchSource(true);
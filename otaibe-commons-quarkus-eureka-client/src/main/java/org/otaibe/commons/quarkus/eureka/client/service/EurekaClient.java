@@ -13,6 +13,7 @@ import jakarta.ws.rs.core.UriBuilder;
 import java.net.Inet4Address;
 import java.net.URI;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
 import java.time.Duration;
 import java.time.LocalDateTime;
@@ -21,6 +22,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import lombok.Getter;
 import lombok.Setter;
@@ -28,7 +30,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.microprofile.config.ConfigProvider;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.otaibe.commons.quarkus.core.utils.JsonPathSelector;
 import org.otaibe.commons.quarkus.core.utils.JsonUtils;
+import org.otaibe.commons.quarkus.core.utils.MapPath;
 import org.otaibe.commons.quarkus.core.utils.MapWrapper;
 import org.otaibe.commons.quarkus.eureka.client.domain.EurekaSettings;
 import org.otaibe.commons.quarkus.eureka.client.domain.InstanceInfo;
@@ -45,6 +49,15 @@ import reactor.util.retry.Retry;
 @Slf4j
 public class EurekaClient {
 
+  private static final MapPath<List> APPLICATION_INSTANCES =
+      MapWrapper.compile(List.class, "application", "instance");
+  private static final MapPath<String> INSTANCE_STATUS = MapWrapper.compile(String.class, "status");
+  private static final MapPath<String> INSTANCE_HOME_PAGE_URL =
+      MapWrapper.compile(String.class, "homePageUrl");
+  private static final JsonPathSelector INSTANCES_SELECTOR =
+      JsonPathSelector.compile(
+          "application.instance[*].status", "application.instance[*].homePageUrl");
+
   private final Optional<String> contextPath;
 
   private final String appName;
@@ -135,7 +148,12 @@ public class EurekaClient {
     /**
      * curl -v -H 'Accept: application/json' http://eureka-at-staging.otaibe.org:9333/eureka/apps
      */
-    return getApps(getApiPath().build().getPath());
+    return getApps(
+        getApiPath().build().getPath(),
+        bytes ->
+            getJsonUtils()
+                .readValue(bytes, Map.class, getObjectMapper())
+                .map(map -> (Map<String, Object>) map));
   }
 
   public Mono<String> getNextServer(final String serviceName) {
@@ -188,11 +206,13 @@ public class EurekaClient {
       }
     }
 
-    return getApps(getPath(serviceName))
+    return getApps(
+            getPath(serviceName),
+            bytes -> getJsonUtils().readPaths(bytes, INSTANCES_SELECTOR, getObjectMapper()))
         .map(
             map ->
                 Optional.ofNullable(
-                    getMapWrapper().getValue(map, List.class, "application", "instance")))
+                    APPLICATION_INSTANCES.get(map)))
         .map(
             list ->
                 list.orElseThrow(
@@ -203,8 +223,8 @@ public class EurekaClient {
                     .filter(
                         o ->
                             StringUtils.equals(
-                                InstanceInfo.UP, getMapWrapper().getStringValue((Map) o, "status")))
-                    .map(o -> getMapWrapper().getStringValue((Map) o, "homePageUrl"))
+                                InstanceInfo.UP, INSTANCE_STATUS.getString((Map) o)))
+                    .map(o -> INSTANCE_HOME_PAGE_URL.getString((Map) o))
                     .collect(Collectors.toList()))
         .map(o -> (List) o)
         .filter(list -> !list.isEmpty())
@@ -256,7 +276,8 @@ public class EurekaClient {
         .doOnError(throwable -> log.error("unable to registerApp", throwable));
   }
 
-  private Mono<Map<String, Object>> getApps(final String path) {
+  private Mono<Map<String, Object>> getApps(
+      final String path, final Function<byte[], Optional<Map<String, Object>>> reader) {
     return Mono.fromCompletionStage(
             getClient()
                 .get(path)
@@ -264,12 +285,14 @@ public class EurekaClient {
                 .send()
                 .convert()
                 .toCompletionStage())
-        .map(bufferHttpResponse -> bufferHttpResponse.bodyAsString())
-        .doOnNext(s -> log.debug("all apps: {}", s))
-        .map(
-            s ->
-                (Map<String, Object>)
-                    getJsonUtils().readValue(s, Map.class, getObjectMapper()).get())
+        .map(bufferHttpResponse -> bufferHttpResponse.body().getBytes())
+        .doOnNext(
+            bytes -> {
+              if (log.isDebugEnabled()) {
+                log.debug("all apps: {}", new String(bytes, StandardCharsets.UTF_8));
+              }
+            })
+        .map(bytes -> reader.apply(bytes).get())
         // .doOnError(throwable -> log.error("error", throwable))
         .retryWhen(Retry.backoff(10, Duration.ofMillis(100)))
         .doOnError(
@@ -63,8 +63,7 @@ public abstract class AbstractPgReactiveDaoImplementation<T, ID> {
     log.info("init started");
     final T dummyEntityWithAllFields = createDummyEntityWithAllFields();
     // log.info("init dummyEntityWithAllFields={}", dummyEntityWithAllFields);
-    final Map<String, Object> entity =
-        getJsonUtils().toMap(dummyEntityWithAllFields, getJsonConfig().getDbPropsNamesMapper());
+    final Map<String, Object> entity = toColumnMap(dummyEntityWithAllFields);
     // log.info("init entity={}", entity);
     allColumnsHeader = StringUtils.join(entity.keySet(), COMMA);
     fillSelectFromSql();
@@ -197,8 +196,7 @@ public abstract class AbstractPgReactiveDaoImplementation<T, ID> {
   }
 
   public Tuple2<String, Tuple> prepareForInsert(final T data) {
-    final Map<String, Object> entity =
-        getJsonUtils().toMap(data, getJsonConfig().getDbPropsNamesMapper());
+    final Map<String, Object> entity = toColumnMap(data);
     fixDataMap(data, entity);
 
     final List<Object> values = new ArrayList<>();
@@ -240,6 +238,41 @@ public abstract class AbstractPgReactiveDaoImplementation<T, ID> {
     return Tuples.of(sql, tuple);
   }
 
+  /**
+   * Opt-in for the build time generated {@link EntityColumnAccessor} of the entity (requires the
+   * pg-reactive-client extension). The accessor reads the properties directly instead of going
+   * through jackson, so {@link #fixDataMap(Object, Map)} receives the raw values (e.g. {@link
+   * java.time.LocalDateTime} instead of its json string, nested objects instead of maps). The
+   * column names follow the default snake_case {@link JsonConfig#getDbPropsNamesMapper()}.
+   */
+  protected boolean useColumnAccessor() {
+    return false;
+  }
+
+  protected Map<String, Object> toColumnMap(final T data) {
+    if (useColumnAccessor()) {
+      final Optional<EntityColumnAccessor<T>> accessor = EntityColumnAccessors.get(data.getClass());
+      if (accessor.isPresent()) {
+        final String[] columnNames = accessor.get().getColumnNames();
+        final Object[] values = accessor.get().getValues(data);
+        final Map<String, Object> result = new LinkedHashMap<>(columnNames.length * 2);
+        for (int i = 0; i < columnNames.length; i++) {
+          final Object value = values[i];
+          // same filtering as JsonUtils.toMap: no nulls, empty strings or unicode null chars
+          if (value == null
+              || (value instanceof String
+                  && (((String) value).isEmpty() || 0x0 == ((String) value).charAt(0)))) {
+            continue;
+          }
+          result.put(columnNames[i], value);
+        }
+        return result;
+      }
+      log.debug("no column accessor for {}, falling back to jackson", data.getClass());
+    }
+    return getJsonUtils().toMap(data, getJsonConfig().getDbPropsNamesMapper());
+  }
+
   protected void fillSelectFromSql() {
     selectFromSql = MessageFormat.format(SELECT_FROM, allColumnsHeader, getTableName());
   }
@@ -0,0 +1,18 @@
+package org.otaibe.commons.quarkus.pg.reactive.client.dao;
+
+/**
+ * Reflection free access to the columns of an entity. Implementations are generated at build time
+ * by the pg-reactive-client extension, one per entity type of an {@link
+ * AbstractPgReactiveDaoImplementation}, and registered in {@link EntityColumnAccessors}.
+ */
+public interface EntityColumnAccessor<T> {
+
+  /** The column names in a stable order, the same order is used by {@link #getValues(Object)}. */
+  String[] getColumnNames();
+
+  /**
+   * The raw property values (primitives boxed, enums as their name) in the order of {@link
+   * #getColumnNames()}.
+   */
+  Object[] getValues(T entity);
+}
@@ -0,0 +1,21 @@
+package org.otaibe.commons.quarkus.pg.reactive.client.dao;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Registry of the build time generated {@link EntityColumnAccessor}s, keyed by entity class. */
+public final class EntityColumnAccessors {
+
+  private static final Map<Class<?>, EntityColumnAccessor<?>> ACCESSORS = new ConcurrentHashMap<>();
+
+  private EntityColumnAccessors() {}
+
+  public static void register(final Class<?> entityClass, final EntityColumnAccessor<?> accessor) {
+    ACCESSORS.put(entityClass, accessor);
+  }
+
+  public static <T> Optional<EntityColumnAccessor<T>> get(final Class<?> entityClass) {
+    return Optional.ofNullable((EntityColumnAccessor<T>) ACCESSORS.get(entityClass));
+  }
+}
@@ -1,8 +1,11 @@
 package org.otaibe.commons.quarkus.rest.utils;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
 import io.vertx.ext.web.RoutingContext;
 import jakarta.inject.Inject;
+import java.io.OutputStream;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
@@ -10,6 +13,7 @@ import javax.ws.rs.core.Response;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.otaibe.commons.quarkus.core.utils.DataFormat;
 import org.otaibe.commons.quarkus.core.utils.JsonUtils;
 import reactor.core.publisher.Mono;
 import reactor.util.function.Tuple3;
@@ -22,6 +26,7 @@ public class ControllerUtils {
 
     public static final String CLIENT_ERROR_KEY = "client-error-key";
     public static final String OBJECT_MAPPER_KEY = "object-mapper-key";
+    public static final int INITIAL_BUFFER_SIZE = 1024;
 
     @Inject
     JsonUtils jsonUtils;
@@ -41,8 +46,11 @@ public class ControllerUtils {
                       .filter(t -> isValid.apply(t))
                       .map(
                           t -> {
-                            final String body = getStringBody(objects, t);
-                            rc.response().end(body);
+                            if (t instanceof String) {
+                              rc.response().end((String) t);
+                            } else {
+                              rc.response().end(getBufferBody(rc, objects, t));
+                            }
                             return true;
                           })
                       .orElseGet(
@@ -81,7 +89,14 @@ public class ControllerUtils {
               objects ->
                   Optional.ofNullable(objects.getT1())
                       .filter(t -> isValid.apply(t))
-                      .map(t -> webResult.complete(Response.ok(getStringBody(objects, t)).build()))
+                      .map(
+                          t ->
+                              webResult.complete(
+                                  Response.ok(
+                                          t instanceof String
+                                              ? t
+                                              : getBufferBody(objects, t).getBytes())
+                                      .build()))
                       .orElseGet(
                           () -> {
                             final Response.Status status =
@@ -145,9 +160,64 @@ public class ControllerUtils {
                                         objectMapper.orElse(getJsonUtils().getObjectMapper())))));
     }
 
+  /**
+   * @deprecated not called anymore, both {@code processResult} variants serialize with {@link
+   *     #getBufferBody(Tuple3, Object)}, override that one instead
+   */
+  @Deprecated
   protected <T> String getStringBody(
       final Tuple3<T, Optional<Object>, ObjectMapper> objects, final T t) {
         return String.class.isAssignableFrom(t.getClass()) ?
                 (String) t : getJsonUtils().toStringLazy(t, objects.getT3()).toString();
     }
+
+  /**
+   * Serializes the body with the mapper (UTF-8 for text json) directly into a Vert.x {@link
+   * Buffer}, skipping the intermediate {@link String}. The single hook for the serialization of the
+   * results of both {@code processResult} variants, a {@link String} result is written as it is.
+   */
+  protected <T> Buffer getBufferBody(
+      final Tuple3<T, Optional<Object>, ObjectMapper> objects, final T t) {
+    final Buffer buffer = Buffer.buffer(INITIAL_BUFFER_SIZE);
+    getJsonUtils().writeValue(t, new BufferOutputStream(buffer), objects.getT3());
+    return buffer;
+  }
+
+  /**
+   * Same as {@link #getBufferBody(Tuple3, Object)}, encoded as Smile or CBOR when the Accept header
+   * of the request asks for it (the Content-Type is set then). Mappers of other formats (e.g. yaml)
+   * are used as they are.
+   */
+  protected <T> Buffer getBufferBody(
+      final RoutingContext rc, final Tuple3<T, Optional<Object>, ObjectMapper> objects, final T t) {
+    final ObjectMapper objectMapper = objects.getT3();
+    final Optional<DataFormat> format =
+        DataFormat.of(objectMapper.getFactory())
+            .flatMap(current -> DataFormat.fromAccept(rc.request().getHeader(HttpHeaders.ACCEPT)))
+            .filter(requested -> requested != DataFormat.JSON);
+    if (format.isEmpty()) {
+      return getBufferBody(objects, t);
+    }
+    rc.response().putHeader(HttpHeaders.CONTENT_TYPE, format.get().getMediaType());
+    final ObjectMapper mapper = getJsonUtils().getMapper(objectMapper, format.get());
+    return getBufferBody(Tuples.of(objects.getT1(), objects.getT2(), mapper), t);
+  }
+
+  private static class BufferOutputStream extends OutputStream {
+    private final Buffer buffer;
+
+    BufferOutputStream(final Buffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public void write(final int b) {
+      buffer.appendByte((byte) b);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) {
+      buffer.appendBytes(b, off, len);
+    }
+  }
 }
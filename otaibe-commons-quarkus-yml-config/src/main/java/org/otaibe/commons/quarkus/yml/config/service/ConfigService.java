@@ -70,22 +70,17 @@ public abstract class ConfigService {
         // .doOnNext(maps -> log.info("yml config list: {}", getJsonUtils().toStringLazy(maps,
         // getObjectMapper())))
         .map(
-            maps ->
-                maps.stream()
-                    .reduce(
-                        allSettings,
-                        (map, map2) -> {
-                          try {
-                            return getMapWrapper().mergeStringObjectMap(map, map2);
-                          } catch (final Exception e) {
-                            log.error("unable to merge maps", e);
-                            log.error(
-                                "map: {}", getJsonUtils().toStringLazy(map, getObjectMapper()));
-                            log.error(
-                                "map2: {}", getJsonUtils().toStringLazy(map2, getObjectMapper()));
-                            throw new RuntimeException(e);
-                          }
-                        }))
+            maps -> {
+              try {
+                return isImmutableSettings()
+                    ? getMapWrapper().mergeImmutableStringObjectMaps(maps)
+                    : getMapWrapper().mergeStringObjectMaps(maps);
+              } catch (final Exception e) {
+                log.error("unable to merge maps", e);
+                log.error("maps: {}", getJsonUtils().toStringLazy(maps, getObjectMapper()));
+                throw new RuntimeException(e);
+              }
+            })
         .map(
             map -> {
               // log.info("yml config: {}", getJsonUtils().toStringLazy(map, getObjectMapper()));
@@ -99,7 +94,17 @@ public abstract class ConfigService {
               getIsInitialized().set(true);
               return true;
             })
-        .subscribe();
+        .subscribe(
+            aBoolean -> {},
+            throwable -> log.error("unable to initialize the settings", throwable));
+    }
+
+    /**
+     * @return true to keep the settings deeply immutable, so they can be shared between threads
+     *     without copying; {@link #readAllSettings(Map)} must not modify them then. False by default.
+     */
+    protected boolean isImmutableSettings() {
+        return false;
     }
 
     public Mono<Boolean> isInitialized() {
@@ -0,0 +1,394 @@
+package org.otaibe.commons.quarkus.pg.reactive.client.extension.deployment;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import io.quarkus.deployment.GeneratedClassGizmoAdaptor;
+import io.quarkus.deployment.annotations.BuildProducer;
+import io.quarkus.deployment.annotations.BuildStep;
+import io.quarkus.deployment.annotations.ExecutionTime;
+import io.quarkus.deployment.annotations.Record;
+import io.quarkus.deployment.builditem.CombinedIndexBuildItem;
+import io.quarkus.deployment.builditem.FeatureBuildItem;
+import io.quarkus.deployment.builditem.GeneratedClassBuildItem;
+import io.quarkus.deployment.builditem.nativeimage.ReflectiveClassBuildItem;
+import io.quarkus.gizmo.BranchResult;
+import io.quarkus.gizmo.BytecodeCreator;
+import io.quarkus.gizmo.ClassCreator;
+import io.quarkus.gizmo.FieldDescriptor;
+import io.quarkus.gizmo.MethodCreator;
+import io.quarkus.gizmo.MethodDescriptor;
+import io.quarkus.gizmo.ResultHandle;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.jboss.jandex.AnnotationInstance;
+import org.jboss.jandex.AnnotationValue;
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.FieldInfo;
+import org.jboss.jandex.IndexView;
+import org.jboss.jandex.MethodInfo;
+import org.jboss.jandex.PrimitiveType;
+import org.jboss.jandex.Type;
+import org.jboss.logging.Logger;
+import org.otaibe.commons.quarkus.pg.reactive.client.dao.AbstractPgReactiveDaoImplementation;
+import org.otaibe.commons.quarkus.pg.reactive.client.dao.EntityColumnAccessor;
+import org.otaibe.commons.quarkus.pg.reactive.client.extension.runtime.PgReactiveClientRecorder;
+
+/**
+ * Generates an {@link EntityColumnAccessor} for the entity type of every {@link
+ * AbstractPgReactiveDaoImplementation} found in the index. The accessor mirrors what the snake_case
+ * {@code JsonConfig.dbPropsNamesMapper} would produce for the entity: public getters (and public
+ * fields), {@link JsonProperty} renames and {@link JsonIgnore}. Entities relying on any other jackson
+ * annotation are skipped and keep using the jackson based conversion.
+ */
+class PgReactiveClientExtensionProcessor {
+
+    private static final Logger LOG = Logger.getLogger(PgReactiveClientExtensionProcessor.class);
+
+    private static final String FEATURE = "pg-reactive-client-extension";
+    private static final String ACCESSOR_SUFFIX = "_ColumnAccessor";
+
+    private static final DotName DAO = DotName.createSimple(AbstractPgReactiveDaoImplementation.class.getName());
+    private static final DotName OBJECT = DotName.createSimple(Object.class.getName());
+    private static final DotName JSON_PROPERTY = DotName.createSimple(JsonProperty.class.getName());
+    private static final DotName JSON_IGNORE = DotName.createSimple(JsonIgnore.class.getName());
+    private static final DotName JSON_PROPERTY_ORDER = DotName.createSimple(JsonPropertyOrder.class.getName());
+    private static final String JACKSON_PACKAGE = "com.fasterxml.jackson.";
+    private static final int SYNTHETIC = 0x1000;
+
+    private static final PropertyNamingStrategies.NamingBase SNAKE_CASE =
+            (PropertyNamingStrategies.NamingBase) PropertyNamingStrategies.SNAKE_CASE;
+
+    @BuildStep
+    FeatureBuildItem feature() {
+        return new FeatureBuildItem(FEATURE);
+    }
+
+    @BuildStep
+    @Record(ExecutionTime.STATIC_INIT)
+    void generateColumnAccessors(final CombinedIndexBuildItem combinedIndex,
+                                 final BuildProducer<GeneratedClassBuildItem> generatedClasses,
+                                 final BuildProducer<ReflectiveClassBuildItem> reflectiveClasses,
+                                 final PgReactiveClientRecorder recorder) {
+        final IndexView index = combinedIndex.getIndex();
+        final Map<String, String> accessors = new HashMap<>();
+        for (final ClassInfo dao : index.getAllKnownSubclasses(DAO)) {
+            final Optional<ClassInfo> entity = resolveEntityType(index, dao)
+                    .filter(entityName -> !accessors.containsKey(entityName.toString()))
+                    .map(index::getClassByName);
+            if (entity.isEmpty()) {
+                continue;
+            }
+            final Optional<List<Property>> properties = collectProperties(index, entity.get());
+            if (properties.isEmpty()) {
+                continue;
+            }
+            final String accessorName = entity.get().name().toString() + ACCESSOR_SUFFIX;
+            generateAccessor(index, generatedClasses, entity.get(), accessorName, properties.get());
+            reflectiveClasses.produce(ReflectiveClassBuildItem.builder(accessorName).constructors(true).build());
+            accessors.put(entity.get().name().toString(), accessorName);
+            LOG.debugf("generated column accessor %s", accessorName);
+        }
+        recorder.registerColumnAccessors(accessors);
+    }
+
+    /** Walks up to the direct subclass of the dao and returns its first type argument. */
+    private Optional<DotName> resolveEntityType(final IndexView index, final ClassInfo dao) {
+        ClassInfo current = dao;
+        while (current != null && !DAO.equals(current.superName())) {
+            current = index.getClassByName(current.superName());
+        }
+        if (current == null) {
+            return Optional.empty();
+        }
+        final Type superType = current.superClassType();
+        if (superType.kind() != Type.Kind.PARAMETERIZED_TYPE) {
+            return Optional.empty();
+        }
+        final Type entityType = superType.asParameterizedType().arguments().get(0);
+        if (entityType.kind() != Type.Kind.CLASS) {
+            LOG.debugf("entity type of %s is not a concrete class: %s", dao.name(), entityType);
+            return Optional.empty();
+        }
+        return Optional.of(entityType.name());
+    }
+
+    /**
+     * Collects the serializable properties in jackson's default order (fields of the top most class
+     * first, then getter only properties). Returns empty when the entity can't be handled.
+     */
+    private Optional<List<Property>> collectProperties(final IndexView index, final ClassInfo entity) {
+        if (entity == null || Modifier.isAbstract(entity.flags()) || Modifier.isInterface(entity.flags())) {
+            return Optional.empty();
+        }
+        final List<ClassInfo> hierarchy = new ArrayList<>();
+        ClassInfo current = entity;
+        while (!OBJECT.equals(current.name())) {
+            if (hasUnsupportedAnnotation(current.declaredAnnotations())) {
+                LOG.debugf("%s uses jackson annotations, no column accessor generated", entity.name());
+                return Optional.empty();
+            }
+            hierarchy.add(0, current);
+            if (current.superName() == null || OBJECT.equals(current.superName())) {
+                break;
+            }
+            current = index.getClassByName(current.superName());
+            if (current == null) {
+                LOG.debugf("%s has a super class outside of the index, no column accessor generated", entity.name());
+                return Optional.empty();
+            }
+        }
+
+        final Map<String, Property> properties = new LinkedHashMap<>();
+        for (final ClassInfo classInfo : hierarchy) {
+            for (final FieldInfo field : classInfo.unsortedFields()) {
+                if (Modifier.isStatic(field.flags()) || isSynthetic(field.flags())) {
+                    continue;
+                }
+                if (hasUnsupportedAnnotation(field.annotations())) {
+                    return Optional.empty();
+                }
+                properties.computeIfAbsent(field.name(), Property::new).field = field;
+            }
+        }
+        for (int i = hierarchy.size() - 1; i >= 0; i--) {
+            for (final MethodInfo method : hierarchy.get(i).methods()) {
+                final String implicitName = getterName(method);
+                if (implicitName == null) {
+                    continue;
+                }
+                if (hasUnsupportedAnnotation(method.annotations())) {
+                    return Optional.empty();
+                }
+                final Property property = properties.computeIfAbsent(implicitName, Property::new);
+                if (property.getter == null) {
+                    property.getter = method;
+                }
+            }
+        }
+
+        final List<Property> result = new ArrayList<>();
+        for (final Property property : properties.values()) {
+            if (property.isIgnored()) {
+                continue;
+            }
+            final boolean explicit = property.explicitName() != null;
+            final boolean publicGetter = property.getter != null && Modifier.isPublic(property.getter.flags());
+            final boolean publicField = property.field != null
+                    && Modifier.isPublic(property.field.flags())
+                    && !Modifier.isTransient(property.field.flags());
+            if (publicGetter || publicField) {
+                result.add(property);
+            } else if (explicit) {
+                LOG.debugf("%s.%s is not accessible, no column accessor generated", entity.name(), property.name);
+                return Optional.empty();
+            }
+        }
+        return Optional.of(result);
+    }
+
+    private void generateAccessor(final IndexView index,
+                                  final BuildProducer<GeneratedClassBuildItem> generatedClasses,
+                                  final ClassInfo entity,
+                                  final String accessorName,
+                                  final List<Property> properties) {
+        try (final ClassCreator creator = ClassCreator.builder()
+                .classOutput(new GeneratedClassGizmoAdaptor(generatedClasses, true))
+                .className(accessorName)
+                .interfaces(EntityColumnAccessor.class)
+                .build()) {
+
+            final MethodCreator columnNames = creator.getMethodCreator("getColumnNames", String[].class);
+            final ResultHandle names = columnNames.newArray(String.class, properties.size());
+            for (int i = 0; i < properties.size(); i++) {
+                columnNames.writeArrayValue(names, i, columnNames.load(properties.get(i).columnName()));
+            }
+            columnNames.returnValue(names);
+
+            final MethodCreator getValues = creator.getMethodCreator("getValues", Object[].class, Object.class);
+            final ResultHandle data = getValues.checkCast(getValues.getMethodParam(0), entity.name().toString());
+            final ResultHandle values = getValues.newArray(Object.class, properties.size());
+            for (int i = 0; i < properties.size(); i++) {
+                final Property property = properties.get(i);
+                final boolean useGetter = property.getter != null && Modifier.isPublic(property.getter.flags());
+                final Type type = useGetter ? property.getter.returnType() : property.field.type();
+                final ResultHandle value = useGetter ?
+                        getValues.invokeVirtualMethod(MethodDescriptor.of(property.getter), data) :
+                        getValues.readInstanceField(FieldDescriptor.of(property.field), data);
+                writeValue(index, getValues, values, i, type, value);
+            }
+            getValues.returnValue(values);
+        }
+    }
+
+    private void writeValue(final IndexView index,
+                            final MethodCreator method,
+                            final ResultHandle values,
+                            final int i,
+                            final Type type,
+                            final ResultHandle value) {
+        if (type.kind() == Type.Kind.PRIMITIVE) {
+            final Class<?> primitive = primitiveClass(type.asPrimitiveType().primitive());
+            final Class<?> boxed = boxedClass(type.asPrimitiveType().primitive());
+            method.writeArrayValue(values, i, method.invokeStaticMethod(
+                    MethodDescriptor.ofMethod(boxed, "valueOf", boxed, primitive), value));
+            return;
+        }
+        final ClassInfo typeInfo = type.kind() == Type.Kind.CLASS ? index.getClassByName(type.name()) : null;
+        if (typeInfo != null && typeInfo.isEnum()) {
+            final BranchResult isNull = method.ifNull(value);
+            final BytecodeCreator notNull = isNull.falseBranch();
+            notNull.writeArrayValue(values, i, notNull.invokeVirtualMethod(
+                    MethodDescriptor.ofMethod(Enum.class, "name", String.class), value));
+            return;
+        }
+        method.writeArrayValue(values, i, value);
+    }
+
+    private static boolean isSynthetic(final short flags) {
+        return (flags & SYNTHETIC) != 0;
+    }
+
+    private static boolean hasUnsupportedAnnotation(final Collection<AnnotationInstance> annotations) {
+        return annotations.stream()
+                .map(AnnotationInstance::name)
+                .filter(name -> name.toString().startsWith(JACKSON_PACKAGE))
+                .anyMatch(name -> !JSON_PROPERTY.equals(name)
+                        && !JSON_IGNORE.equals(name)
+                        && !JSON_PROPERTY_ORDER.equals(name));
+    }
+
+    /** Jackson's implicit property name of a getter, null if the method is not a getter. */
+    private static String getterName(final MethodInfo method) {
+        if (Modifier.isStatic(method.flags())
+                || isSynthetic(method.flags())
+                || method.parametersCount() != 0
+                || method.returnType().kind() == Type.Kind.VOID) {
+            return null;
+        }
+        final String name = method.name();
+        if (name.startsWith("get") && !"getClass".equals(name)) {
+            return manglePropertyName(name, 3);
+        }
+        if (name.startsWith("is")) {
+            final Type returnType = method.returnType();
+            final boolean isBoolean = (returnType.kind() == Type.Kind.PRIMITIVE
+                    && returnType.asPrimitiveType().primitive() == PrimitiveType.Primitive.BOOLEAN)
+                    || DotName.createSimple(Boolean.class.getName()).equals(returnType.name());
+            return isBoolean ? manglePropertyName(name, 2) : null;
+        }
+        return null;
+    }
+
+    /** Same as jackson's legacy (non std bean naming) mangling: lower cases the leading upper case run. */
+    private static String manglePropertyName(final String name, final int offset) {
+        if (name.length() == offset) {
+            return null;
+        }
+        final StringBuilder result = new StringBuilder(name.length() - offset);
+        for (int i = offset; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            final char lower = Character.toLowerCase(c);
+            if (c == lower) {
+                result.append(name, i, name.length());
+                break;
+            }
+            result.append(lower);
+        }
+        return result.toString();
+    }
+
+    private static Class<?> primitiveClass(final PrimitiveType.Primitive primitive) {
+        switch (primitive) {
+            case BOOLEAN:
+                return boolean.class;
+            case BYTE:
+                return byte.class;
+            case SHORT:
+                return short.class;
+            case INT:
+                return int.class;
+            case LONG:
+                return long.class;
+            case FLOAT:
+                return float.class;
+            case DOUBLE:
+                return double.class;
+            default:
+                return char.class;
+        }
+    }
+
+    private static Class<?> boxedClass(final PrimitiveType.Primitive primitive) {
+        switch (primitive) {
+            case BOOLEAN:
+                return Boolean.class;
+            case BYTE:
+                return Byte.class;
+            case SHORT:
+                return Short.class;
+            case INT:
+                return Integer.class;
+            case LONG:
+                return Long.class;
+            case FLOAT:
+                return Float.class;
+            case DOUBLE:
+                return Double.class;
+            default:
+                return Character.class;
+        }
+    }
+
+    private static class Property {
+        private final String name;
+        private FieldInfo field;
+        private MethodInfo getter;
+
+        Property(final String name) {
+            this.name = name;
+        }
+
+        boolean isIgnored() {
+            return isIgnored(field == null ? null : field.annotation(JSON_IGNORE))
+                    || isIgnored(getter == null ? null : getter.annotation(JSON_IGNORE));
+        }
+
+        String explicitName() {
+            final String fromGetter = explicitName(getter == null ? null : getter.annotation(JSON_PROPERTY));
+            return fromGetter != null ? fromGetter :
+                    explicitName(field == null ? null : field.annotation(JSON_PROPERTY));
+        }
+
+        String columnName() {
+            final String explicitName = explicitName();
+            return explicitName != null && !explicitName.isEmpty() ? explicitName : SNAKE_CASE.translate(name);
+        }
+
+        private static boolean isIgnored(final AnnotationInstance jsonIgnore) {
+            if (jsonIgnore == null) {
+                return false;
+            }
+            final AnnotationValue value = jsonIgnore.value();
+            return value == null || value.asBoolean();
+        }
+
+        /** Empty string for a {@link JsonProperty} without a name, null without the annotation. */
+        private static String explicitName(final AnnotationInstance jsonProperty) {
+            if (jsonProperty == null) {
+                return null;
+            }
+            final AnnotationValue value = jsonProperty.value();
+            return value == null ? "" : value.asString();
+        }
+    }
+
+}
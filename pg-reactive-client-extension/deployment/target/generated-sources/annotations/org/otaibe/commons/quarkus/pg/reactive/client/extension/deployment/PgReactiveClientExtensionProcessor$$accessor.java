@@ -0,0 +1,8 @@
+package org.otaibe.commons.quarkus.pg.reactive.client.extension.deployment;
+@io.quarkus.Generated("Quarkus annotation processor")
+public final class PgReactiveClientExtensionProcessor$$accessor {
+    private PgReactiveClientExtensionProcessor$$accessor() {}
+    public static Object construct() {
+        return new PgReactiveClientExtensionProcessor();
+    }
+}
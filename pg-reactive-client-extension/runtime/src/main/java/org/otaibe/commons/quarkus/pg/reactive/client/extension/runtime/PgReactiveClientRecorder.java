@@ -0,0 +1,30 @@
+package org.otaibe.commons.quarkus.pg.reactive.client.extension.runtime;
+
+import io.quarkus.runtime.annotations.Recorder;
+import java.util.Map;
+import org.otaibe.commons.quarkus.pg.reactive.client.dao.EntityColumnAccessor;
+import org.otaibe.commons.quarkus.pg.reactive.client.dao.EntityColumnAccessors;
+
+@Recorder
+public class PgReactiveClientRecorder {
+
+    /**
+     * @param accessors entity class name -> generated {@link EntityColumnAccessor} class name
+     */
+    public void registerColumnAccessors(final Map<String, String> accessors) {
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        accessors.forEach((entityClassName, accessorClassName) -> {
+            try {
+                final Class<?> entityClass = Class.forName(entityClassName, false, classLoader);
+                final EntityColumnAccessor<?> accessor = (EntityColumnAccessor<?>) Class
+                        .forName(accessorClassName, true, classLoader)
+                        .getDeclaredConstructor()
+                        .newInstance();
+                EntityColumnAccessors.register(entityClass, accessor);
+            } catch (final ReflectiveOperationException e) {
+                throw new RuntimeException("unable to register column accessor " + accessorClassName, e);
+            }
+        });
+    }
+
+}